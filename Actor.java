@@ -1,13 +1,24 @@
 
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /** 
  * This class represents the actors.
+ * When a MovieList is loaded, there is only one Actor for each distinct name, and it knows all the movies
+ * of the list it appears in.
  * @author atara
  */
 
 public class Actor {
 	
+	private static final Movie[] NO_MOVIES = new Movie[0]; //shared by every actor without movies
+	
 	private String name; //instance variable to store the actor's name
+	private String nameKey; //the name folded to lower case, cached for searching
+	private Movie[] movies = NO_MOVIES; //the movies this actor appears in, in sorted order
+	private int movieCount; //the number of movies used in the movies array
 	
 	/**
 	 * Returns the name of this Actor object. 
@@ -26,6 +37,55 @@ public class Actor {
 		if (n == null || n.trim().length() == 0) //tests if it was passed a null or an empty string
 			throw new IllegalArgumentException("Error: the actor's name cannot be null or empty.\n");
 		name = n; // sets actors name to the specified value for n
+		nameKey = n.toLowerCase();
+	}
+	
+	/**
+	 * Returns the name of this Actor folded to lower case, as it is matched against search keywords.
+	 * @return the lower case name of this Actor object
+	 */
+	String getNameKey() {
+		return nameKey;
+	}
+	
+	/**
+	 * Returns the movies this actor appears in, in sorted order, as they were when the list 
+	 * holding them was loaded.
+	 * @return an unmodifiable list of the movies, which is empty if the actor was never loaded into a list
+	 */
+	public List<Movie> getMovies() {
+		return Collections.unmodifiableList(Arrays.asList(movies).subList(0, movieCount));
+	}
+	
+	/**
+	 * Forgets all the movies of this actor, before they are added again.
+	 */
+	void clearMovies() {
+		movies = NO_MOVIES;
+		movieCount = 0;
+	}
+	
+	/**
+	 * Adds a movie this actor appears in, unless it was the last one added.
+	 * @param m the movie, which sorts after every movie added before it
+	 */
+	void addMovie(Movie m) {
+		if (movieCount > 0 && movies[movieCount - 1] == m) {
+			return; //the same actor listed twice for one movie
+		}
+		if (movieCount == movies.length) {
+			movies = Arrays.copyOf(movies, Math.max(4, movieCount * 2));
+		}
+		movies[movieCount++] = m;
+	}
+	
+	/**
+	 * Shrinks the array of movies to the number of movies, once they have all been added.
+	 */
+	void trimMovies() {
+		if (movieCount < movies.length) {
+			movies = Arrays.copyOf(movies, movieCount);
+		}
 	}
 	
 	/**
@@ -0,0 +1,163 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is an Aho-Corasick automaton, which finds every occurrence of many patterns in a text
+ * with a single pass over the text.
+ * The patterns are stored in a trie, and every state also has a failure link to the state for the
+ * longest proper suffix of its text that is still in the trie, so that no character is read twice.
+ * The automaton does not change after it is built, so it can be shared between threads.
+ * @author atara
+ */
+public class AhoCorasick {
+	
+	//instance variables of AhoCorasick
+	private final int patternCount; //the number of patterns
+	private char[][] labels; //the characters of the transitions out of each state, in sorted order
+	private int[][] targets; //the states the transitions lead to, in the same order as labels
+	private int[] fail; //the failure link of each state
+	private int[] pattern; //the pattern which ends at each state, or -1
+	private int[] output; //the nearest state along the failure links where a pattern ends, or -1
+	private int states; //the number of states
+	
+	/**
+	 * Builds the automaton for the specified patterns.
+	 * @param patterns the patterns to search for; pattern i is reported as i
+	 * @throws IllegalArgumentException if a pattern is null or empty
+	 */
+	public AhoCorasick(String[] patterns) {
+		patternCount = patterns.length;
+		labels = new char[16][];
+		targets = new int[16][];
+		pattern = new int[16];
+		states = 0;
+		newState(); //the root
+		
+		//the trie of all patterns
+		for (int p = 0; p < patterns.length; p++) {
+			if (patterns[p] == null || patterns[p].length() == 0) {
+				throw new IllegalArgumentException("Patterns cannot be null or empty.");
+			}
+			int state = 0;
+			for (int i = 0; i < patterns[p].length(); i++) {
+				char c = patterns[p].charAt(i);
+				int next = transition(state, c);
+				if (next < 0) {
+					next = newState();
+					addTransition(state, c, next);
+				}
+				state = next;
+			}
+			pattern[state] = p;
+		}
+		labels = Arrays.copyOf(labels, states);
+		targets = Arrays.copyOf(targets, states);
+		pattern = Arrays.copyOf(pattern, states);
+		
+		//failure and output links, breadth first so that shorter texts are done first
+		fail = new int[states];
+		output = new int[states];
+		output[0] = -1;
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[0]) {
+			fail[child] = 0;
+			output[child] = -1;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int i = 0; i < labels[state].length; i++) {
+				char c = labels[state][i];
+				int child = targets[state][i];
+				int f = fail[state];
+				while (f != 0 && transition(f, c) < 0) {
+					f = fail[f];
+				}
+				int next = transition(f, c);
+				fail[child] = next >= 0 ? next : 0;
+				output[child] = pattern[fail[child]] >= 0 ? fail[child] : output[fail[child]];
+				queue.add(child);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a new state with no transitions.
+	 * @return the new state
+	 */
+	private int newState() {
+		if (states == labels.length) {
+			labels = Arrays.copyOf(labels, states * 2);
+			targets = Arrays.copyOf(targets, states * 2);
+			pattern = Arrays.copyOf(pattern, states * 2);
+		}
+		labels[states] = new char[0];
+		targets[states] = new int[0];
+		pattern[states] = -1;
+		return states++;
+	}
+	
+	/**
+	 * Adds a transition, keeping the transitions of the state sorted by character.
+	 * @param state the state the transition leaves
+	 * @param c the character of the transition
+	 * @param target the state the transition leads to
+	 */
+	private void addTransition(int state, char c, int target) {
+		char[] oldLabels = labels[state];
+		int[] oldTargets = targets[state];
+		int at = -Arrays.binarySearch(oldLabels, c) - 1;
+		char[] newLabels = new char[oldLabels.length + 1];
+		int[] newTargets = new int[oldTargets.length + 1];
+		System.arraycopy(oldLabels, 0, newLabels, 0, at);
+		System.arraycopy(oldTargets, 0, newTargets, 0, at);
+		newLabels[at] = c;
+		newTargets[at] = target;
+		System.arraycopy(oldLabels, at, newLabels, at + 1, oldLabels.length - at);
+		System.arraycopy(oldTargets, at, newTargets, at + 1, oldTargets.length - at);
+		labels[state] = newLabels;
+		targets[state] = newTargets;
+	}
+	
+	/**
+	 * Follows the transition for the specified character, if there is one.
+	 * @param state the current state
+	 * @param c the character
+	 * @return the next state, or -1 if the state has no transition for c
+	 */
+	private int transition(int state, char c) {
+		int i = Arrays.binarySearch(labels[state], c);
+		return i >= 0 ? targets[state][i] : -1;
+	}
+	
+	/**
+	 * Returns the number of patterns this automaton searches for.
+	 * @return the number of patterns
+	 */
+	public int patternCount() {
+		return patternCount;
+	}
+	
+	/**
+	 * Finds every occurrence of the patterns in the text, in one pass over the text.
+	 * A pattern which occurs more than once is reported once per occurrence.
+	 * @param text the text to search
+	 * @param matches called with the number of each pattern found
+	 */
+	public void search(String text, IntConsumer matches) {
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int next = transition(state, c);
+			while (next < 0 && state != 0) {
+				state = fail[state];
+				next = transition(state, c);
+			}
+			state = next >= 0 ? next : 0;
+			for (int s = pattern[state] >= 0 ? state : output[state]; s >= 0; s = output[s]) {
+				matches.accept(pattern[s]);
+			}
+		}
+	}
+}
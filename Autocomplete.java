@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class suggests completions for the start of a title or an actor's name.
+ * It is built once over a MovieList, and keeps a compressed trie (radix tree) for the titles and
+ * another one for the actor names, where each edge is labelled with a whole run of characters.
+ *
+ * Every entry has a popularity, the number of locations filmed for that title or with that actor,
+ * and every node of a trie remembers the most popular entries below it, so a lookup is only a walk
+ * down the characters of the prefix. Nothing changes after construction, so any number of threads
+ * can use the same Autocomplete at once.
+ * @author atara
+ */
+public final class Autocomplete {
+	
+	//instance variables of Autocomplete
+	private final Trie titles; //the trie over all titles
+	private final Trie actors; //the trie over all actor names
+	
+	/**
+	 * Builds the suggestions for the specified list, remembering up to 10 per prefix.
+	 * @param list the list of movies
+	 */
+	public Autocomplete(MovieList list) {
+		this(list, 10);
+	}
+	
+	/**
+	 * Builds the suggestions for the specified list.
+	 * @param list the list of movies
+	 * @param maxSuggestions the most suggestions that can be asked for at once
+	 * @throws IllegalArgumentException if maxSuggestions is not positive
+	 */
+	public Autocomplete(MovieList list, int maxSuggestions) {
+		if (maxSuggestions <= 0) {
+			throw new IllegalArgumentException("The number of suggestions must be positive.");
+		}
+		HashMap<String, Entry> titleEntries = new HashMap<>();
+		HashMap<String, Entry> actorEntries = new HashMap<>();
+		for (Movie m : list) {
+			int popularity = m.getSfLocations().size();
+			count(titleEntries, m.getTitle(), popularity);
+			count(actorEntries, m.getActor1().getName(), popularity);
+			if (m.getActor2() != null) {
+				count(actorEntries, m.getActor2().getName(), popularity);
+			}
+			if (m.getActor3() != null) {
+				count(actorEntries, m.getActor3().getName(), popularity);
+			}
+		}
+		titles = new Trie(titleEntries, maxSuggestions);
+		actors = new Trie(actorEntries, maxSuggestions);
+	}
+	
+	/**
+	 * Adds the popularity of one movie to the entry for the specified text.
+	 * @param entries the entries, by folded text
+	 * @param text the title or actor name, as it is displayed
+	 * @param popularity the number of locations of the movie
+	 */
+	private static void count(HashMap<String, Entry> entries, String text, int popularity) {
+		String key = MovieList.fold(text);
+		if (key.length() == 0) {
+			return;
+		}
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entries.put(key, new Entry(key, text.trim(), popularity));
+		}
+		else {
+			entry.popularity += popularity;
+		}
+	}
+	
+	/**
+	 * Returns the most popular titles that start with the specified prefix, ignoring case.
+	 * @param prefix the start of a title
+	 * @param k the most suggestions to return; no more than the maximum given at construction are kept
+	 * @return the titles, most popular first, or an empty list if none start with the prefix
+	 */
+	public List<String> completeTitle(String prefix, int k) {
+		return titles.complete(prefix, k);
+	}
+	
+	/**
+	 * Returns the most popular actor names that start with the specified prefix, ignoring case.
+	 * @param prefix the start of an actor's name
+	 * @param k the most suggestions to return; no more than the maximum given at construction are kept
+	 * @return the names, most popular first, or an empty list if none start with the prefix
+	 */
+	public List<String> completeActor(String prefix, int k) {
+		return actors.complete(prefix, k);
+	}
+	
+	/**
+	 * This class is one title or actor name that can be suggested, used while building a trie.
+	 */
+	private static class Entry {
+		private final String key; //the folded text, which prefixes are matched against
+		private final String display; //the text as it is shown
+		private int popularity; //the number of locations, summed over all its movies
+		
+		/**
+		 * Constructs a new entry.
+		 * @param key the folded text
+		 * @param display the text as it is shown
+		 * @param popularity the number of locations so far
+		 */
+		public Entry(String key, String display, int popularity) {
+			this.key = key;
+			this.display = display;
+			this.popularity = popularity;
+		}
+	}
+	
+	/**
+	 * This class is a compressed trie over a set of entries.
+	 * The entries are numbered by rank, most popular first, so the best entries below a node
+	 * are simply the smallest ranks below it.
+	 */
+	private static class Trie {
+		private final String[] displays; //the text of each entry, by rank
+		private final Node root; //the root of the trie, with an empty label
+		
+		/**
+		 * Builds the trie over the specified entries.
+		 * @param entries the entries, by folded text
+		 * @param maxSuggestions the number of best entries to keep at each node
+		 */
+		public Trie(HashMap<String, Entry> entries, int maxSuggestions) {
+			Entry[] ranked = entries.values().toArray(new Entry[0]);
+			Arrays.sort(ranked, (a, b) -> a.popularity != b.popularity
+					? Integer.compare(b.popularity, a.popularity) : a.key.compareTo(b.key));
+			displays = new String[ranked.length];
+			for (int rank = 0; rank < ranked.length; rank++) {
+				displays[rank] = ranked[rank].display;
+			}
+			//build from the keys in sorted order, so that each subtree is a contiguous range
+			Integer[] order = new Integer[ranked.length];
+			for (int rank = 0; rank < ranked.length; rank++) {
+				order[rank] = rank;
+			}
+			Arrays.sort(order, (a, b) -> ranked[a].key.compareTo(ranked[b].key));
+			String[] keys = new String[ranked.length];
+			int[] ranks = new int[ranked.length];
+			for (int i = 0; i < order.length; i++) {
+				keys[i] = ranked[order[i]].key;
+				ranks[i] = order[i];
+			}
+			root = keys.length == 0 ? new Node("", new char[0], new Node[0], new int[0])
+					: build(keys, ranks, 0, keys.length, 0, true, maxSuggestions);
+		}
+		
+		/**
+		 * Builds the node for the keys in the range [low, high), which all share their first depth characters.
+		 * @param keys the folded keys, in sorted order
+		 * @param ranks the rank of each key
+		 * @param low the first key in the range
+		 * @param high one past the last key in the range
+		 * @param depth the number of characters already matched above this node
+		 * @param isRoot true for the root, which always has an empty label
+		 * @param maxSuggestions the number of best entries to keep at the node
+		 * @return the new node
+		 */
+		private static Node build(String[] keys, int[] ranks, int low, int high, int depth, boolean isRoot, int maxSuggestions) {
+			//the first and last keys are the most different, so their common prefix is the range's
+			String first = keys[low];
+			String last = keys[high - 1];
+			int end = depth;
+			while (!isRoot && end < first.length() && end < last.length() && first.charAt(end) == last.charAt(end)) {
+				end++;
+			}
+			String label = first.substring(depth, end);
+			
+			ArrayList<Node> children = new ArrayList<>();
+			IntMerge best = new IntMerge(maxSuggestions);
+			int i = low;
+			if (first.length() == end) {
+				best.add(ranks[low]); //the key that ends exactly here sorts first
+				i++;
+			}
+			while (i < high) {
+				char c = keys[i].charAt(end);
+				int j = i + 1;
+				while (j < high && keys[j].charAt(end) == c) {
+					j++;
+				}
+				Node child = build(keys, ranks, i, j, end, false, maxSuggestions);
+				children.add(child);
+				best.addAll(child.best);
+				i = j;
+			}
+			char[] firstChars = new char[children.size()];
+			for (int c = 0; c < firstChars.length; c++) {
+				firstChars[c] = children.get(c).label.charAt(0);
+			}
+			return new Node(label, firstChars, children.toArray(new Node[0]), best.toArray());
+		}
+		
+		/**
+		 * Returns the most popular entries that start with the specified prefix.
+		 * @param prefix the prefix, which is folded first
+		 * @param k the most entries to return
+		 * @return the entries, most popular first
+		 */
+		public List<String> complete(String prefix, int k) {
+			ArrayList<String> result = new ArrayList<>();
+			if (prefix == null || k <= 0) {
+				return result;
+			}
+			String key = MovieList.fold(prefix);
+			Node node = root;
+			int matched = 0;
+			while (matched < key.length()) {
+				int child = Arrays.binarySearch(node.firstChars, key.charAt(matched));
+				if (child < 0) {
+					return result;
+				}
+				node = node.children[child];
+				String label = node.label;
+				int length = Math.min(label.length(), key.length() - matched);
+				if (!label.regionMatches(0, key, matched, length)) {
+					return result;
+				}
+				matched += length; //the prefix may end part way along the label
+			}
+			for (int i = 0; i < node.best.length && i < k; i++) {
+				result.add(displays[node.best[i]]);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * This class is one node of a compressed trie.
+	 */
+	private static class Node {
+		private final String label; //the characters on the edge from the parent to this node
+		private final char[] firstChars; //the first character of each child's label, in sorted order
+		private final Node[] children; //the children, in the same order as firstChars
+		private final int[] best; //the ranks of the best entries in this subtree, best first
+		
+		/**
+		 * Constructs a new node.
+		 * @param label the characters on the edge from the parent
+		 * @param firstChars the first character of each child's label
+		 * @param children the children
+		 * @param best the ranks of the best entries in this subtree
+		 */
+		public Node(String label, char[] firstChars, Node[] children, int[] best) {
+			this.label = label;
+			this.firstChars = firstChars;
+			this.children = children;
+			this.best = best;
+		}
+	}
+	
+	/**
+	 * This class keeps the smallest ranks added to it, up to a limit.
+	 */
+	private static class IntMerge {
+		private final int[] ranks; //the smallest ranks so far, in increasing order
+		private int size; //the number of ranks kept
+		
+		/**
+		 * Constructs a new, empty merge.
+		 * @param limit the most ranks to keep
+		 */
+		public IntMerge(int limit) {
+			ranks = new int[limit];
+		}
+		
+		/**
+		 * Adds a rank, keeping it only if it is among the smallest seen.
+		 * @param rank the rank to add
+		 */
+		public void add(int rank) {
+			if (size == ranks.length && rank >= ranks[size - 1]) {
+				return;
+			}
+			int i = size < ranks.length ? size++ : size - 1;
+			while (i > 0 && ranks[i - 1] > rank) {
+				ranks[i] = ranks[i - 1];
+				i--;
+			}
+			ranks[i] = rank;
+		}
+		
+		/**
+		 * Adds all of the specified ranks.
+		 * @param more the ranks to add
+		 */
+		public void addAll(int[] more) {
+			for (int rank : more) {
+				add(rank);
+			}
+		}
+		
+		/**
+		 * Returns the ranks kept, in increasing order.
+		 * @return the ranks kept
+		 */
+		public int[] toArray() {
+			return Arrays.copyOf(ranks, size);
+		}
+	}
+}
@@ -1,13 +1,19 @@
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * This class is a generic implementation of a binary search tree which implements the Collection interface. 
  * It serves as the parent class of MovieList.
+ * The tree is kept height balanced (AVL) by rotations in add and remove, so its depth stays O(log n) 
+ * no matter in what order the data arrives.
  * It has the nested classes of Node and bstIterator.
  * 
  * @author atara
@@ -17,6 +23,8 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	//instance variables of BST
 	private Node<E> root; //the root of the tree
 	private int size; //the number of nodes in the tree
+	protected int modCount; //the number of structural changes to the tree, used by the iterators to fail fast
+	private boolean readOnly; //true once the tree can no longer be changed
 	
 	/**
 	 * Constructs a new empty binary search tree.
@@ -56,29 +64,43 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	 * @return the String representation of this BST
 	 */
 	public String toString() {
-		String result = "";
+		StringBuilder result = new StringBuilder();
+		try {
+			appendTo(result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //a StringBuilder never throws
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Writes the data in the tree inorder, one per line, the same as toString, straight to out.
+	 * It takes time linear in the length of the output, and when out is a buffered writer the first
+	 * lines are written before the rest of the tree is even visited.
+	 * @param out where to write the data
+	 * @return out
+	 * @throws IOException if out cannot be written to
+	 */
+	public Appendable appendTo(Appendable out) throws IOException {
 		if (isEmpty()) {
-			return "Empty list.";
+			return out.append("Empty list.");
 		}
-		else {
-			return myHelper(root, "");
+		for (E data : this) {
+			appendData(out, data);
+			out.append('\n');
 		}
+		return out;
 	}
 	
 	/**
-	 * Private recursive method to traverse the tree inorder 
-	 * and add the data in the nodes to an answer string, ans.
-	 * Ans is then returned to the public toString() method.
-	 * @param node the node which we are currently at in the tree
-	 * @param ans a string containing the concatenated data from the nodes
-	 * @return the string format of all of the data in the tree inorder
+	 * Writes the data of one node for appendTo. Subclasses can write their data without making a String first.
+	 * @param out where to write the data
+	 * @param data the data of the node
+	 * @throws IOException if out cannot be written to
 	 */
-	private String myHelper(Node<E> node, String ans) {
-		if (node != null) {
-			ans += myHelper(node.left, ans) + node + "\n" + myHelper(node.right, ans);
-		}
-		return ans;
-	}	
+	protected void appendData(Appendable out, E data) throws IOException {
+		out.append(String.valueOf(data));
+	}
 
 	/**
 	 * This method returns the node who contains the specified data
@@ -86,29 +108,29 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	 * @return the node which contains this specified data
 	 */
 	public E get(E data) {
-		if (isEmpty() || !contains(data)) {
-			return null;
-		}
-		return get(data, root);
+		Node<E> node = find(data);
+		return node == null ? null : node.data;
 	}
 	
 	/**
-	 * Private recursive method to get the node with the specified data.
-	 * This method is called by the public get method.
+	 * Private method to find the node with the specified data in a single descent of the tree,
+	 * comparing against each node on the way down only once.
 	 * @param data the data to search for in the nodes
-	 * @param node the current node which to search and compare
-	 * @return the node which contains this specified data
+	 * @return the node which contains this specified data, or null if there is no such node
 	 */
-	private E get(E data, Node<E> node) {
-		if (data.compareTo(node.data) == 0) {
-			return node.data;
-		}
-		if (data.compareTo(node.data) < 0) {
-			return get(data, node.left);
+	private Node<E> find(E data) {
+		if (data == null) {
+			return null;
 		}
-		else {
-			return get(data, node.right);
+		Node<E> node = root;
+		while (node != null) {
+			int cmp = data.compareTo(node.data);
+			if (cmp == 0) {
+				return node;
+			}
+			node = cmp < 0 ? node.left : node.right;
 		}
+		return null;
 	}
 	
 	/**
@@ -131,10 +153,8 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 		if (node == null) {
 			return null;
 		}
-		Node<E> temp = node;
-		temp.data = node.data;
-		temp.left = clone(node.left);
-		temp.right = clone(node.right);
+		Node<E> temp = new Node<E>(node.data, clone(node.left), clone(node.right));
+		temp.height = node.height;
 		return temp;
 	}
 
@@ -304,22 +324,19 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 		if (node == null) {
 			return null;
 		}
-		if (data.compareTo(node.data) > 0) {
-			if (node.right != null) {
-				if (node.right.data.compareTo(data) < 0) {
-					return floor(data, node.right);
-				}
-				else {
-					return node.data;
-				}
-			}
-			else {
-				return node.data;
-			}
+		int cmp = data.compareTo(node.data);
+		if (cmp == 0) {
+			return node.data;
 		}
-		else {
-			return floor(data, node.left);
+		if (cmp < 0) {
+			return floor(data, node.left); //everything here and to the right is too big
+		}
+		//this node is small enough, but there may be something bigger that still is in the right branch
+		E temp = floor(data, node.right);
+		if (temp == null) {
+			return node.data;
 		}
+		return temp;
 	}
 	
 	/**
@@ -456,90 +473,150 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	/**
 	 * This boolean method adds new data to the tree by creating a new node and incrementing the size. 
 	 * Returns true if the node is successfully added. 
-	 * @throws IllegalArgumentException if an attempt is made to add null or a duplicate value to the tree
+	 * Returns false if an attempt is made to add null or a duplicate value to the tree
 	 */
 	public boolean add(E data) {
-		if (data == null || contains(data))
+		if (data == null)
 			//throw new IllegalArgumentException("Invalid data. This data cannot be added to the tree.");
 			return false;
-		size++;
-		root = recAdd(root, data);
-		return true;
+		return putIfAbsent(data) == null;
 	}
 	
 	/**
-	 * Private recursive method to add a new node to the tree
-	 * This method is called by the public add method
-	 * @param node the current node we are checking for appropriate placement
-	 * @param data the data to be added to the tree
-	 * @return the new node with the the data to be added
+	 * Finds the data in the tree that is equal to the specified data, or adds the specified data 
+	 * if there is no such data yet. Both happen in a single iterative descent of the tree: 
+	 * the nodes on the way down are remembered, so the new node can be linked in and the tree 
+	 * rebalanced on the way back up without searching for it again.
+	 * @param data the data to look for, and to add if it is absent
+	 * @return the data already in the tree that is equal to the specified data, 
+	 * or null if the specified data was added
+	 * @throws IllegalArgumentException if data is null
 	 */
-	private Node<E> recAdd(Node<E> node, E data) {
-		
-		if (node == null) 
-			return new Node<E>(data, null, null);
-		
-		if (data.compareTo(node.data) < 0) 
-			node.left = recAdd(node.left, data);
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public E putIfAbsent(E data) {
+		checkWritable();
+		if (data == null) {
+			throw new IllegalArgumentException("Invalid data. Null cannot be added to the tree.");
+		}
 		
-		else 
-			node.right = recAdd(node.right, data);
+		//walk down, remembering the path and which way we went at each node
+		Node<E>[] path = (Node<E>[]) new Node[height(root)];
+		boolean[] wentLeft = new boolean[path.length];
+		int depth = 0;
+		Node<E> node = root;
+		while (node != null) {
+			int cmp = data.compareTo(node.data);
+			if (cmp == 0) {
+				return node.data; //already in the tree
+			}
+			path[depth] = node;
+			wentLeft[depth] = cmp < 0;
+			depth++;
+			node = cmp < 0 ? node.left : node.right;
+		}
 		
-		return node;
+		//link the new node in and rebalance back up the path
+		Node<E> child = new Node<E>(data, null, null);
+		size++;
+		modCount++;
+		for (int i = depth - 1; i >= 0; i--) {
+			Node<E> parent = path[i];
+			int oldHeight = parent.height;
+			if (wentLeft[i]) {
+				parent.left = child;
+			}
+			else {
+				parent.right = child;
+			}
+			child = balance(parent);
+			//nothing above this point changed, so the rest of the path is still linked and balanced
+			if (child == parent && parent.height == oldHeight) {
+				return null;
+			}
+		}
+		root = child;
+		return null;
 	}
 	
 	/**
-	 * Additional method to add a new node to the tree
-	 * void return type, not boolean
-	 * @param data the data to add to the tree
+	 * Returns the height of the specified subtree. An empty subtree has a height of 0.
+	 * @param node the root of the subtree
+	 * @return the height of the subtree
 	 */
-	public void add2(E data) {
-		//can't have nulls in the tree
-		if (data == null) {
-			return;
-		}
-		
-		//create node
-		Node<E> newNode = new Node<>(data, null, null);
-		
-		//otherwise, check if newNode should be placed to the left of right in the tree
-		add2(root, newNode);
+	private int height(Node<E> node) {
+		return node == null ? 0 : node.height;
 	}
 	
 	/**
-	 * Recursive method to add a new node to the BST
-	 * @param currentRoot the current place we are at in the tree
-	 * @param newNode the new node to place in the proper position in the tree
+	 * Recomputes the height of the specified node from the heights of its children.
+	 * @param node the node whose height should be updated
 	 */
-	private void add2(Node<E> currentRoot, Node<E> newNode) {
-		//empty tree -> make it the root, increment the size and finished
-		if (currentRoot == null) {
-			root = newNode;
-			size++;
-			return;
-		}
-		//already in the tree
-		if (currentRoot == newNode) {
-			return;
-		}
-		else if (newNode.data.compareTo(currentRoot.data) < 0) {
-			if (currentRoot.left != null) {
-				add2(currentRoot.left, newNode);
+	private void updateHeight(Node<E> node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+	}
+	
+	/**
+	 * Rotates the subtree to the right, so that the left child of node becomes the new root of the subtree.
+	 * @param node the root of the subtree to rotate
+	 * @return the new root of the subtree
+	 */
+	private Node<E> rotateRight(Node<E> node) {
+		Node<E> pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = node;
+		updateHeight(node);
+		updateHeight(pivot);
+		return pivot;
+	}
+	
+	/**
+	 * Rotates the subtree to the left, so that the right child of node becomes the new root of the subtree.
+	 * @param node the root of the subtree to rotate
+	 * @return the new root of the subtree
+	 */
+	private Node<E> rotateLeft(Node<E> node) {
+		Node<E> pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = node;
+		updateHeight(node);
+		updateHeight(pivot);
+		return pivot;
+	}
+	
+	/**
+	 * Restores the AVL property at the specified node after one of its subtrees has grown or shrunk by one level.
+	 * Performs a single or double rotation when the heights of the two subtrees differ by more than one.
+	 * @param node the node to rebalance
+	 * @return the new root of the subtree, which may be a different node after a rotation
+	 */
+	private Node<E> balance(Node<E> node) {
+		updateHeight(node);
+		int factor = height(node.left) - height(node.right);
+		//left heavy
+		if (factor > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left); //left-right case
 			}
-			else currentRoot.left = newNode;
-			size++;
-			return;
+			return rotateRight(node);
 		}
-		else {
-			if (newNode.data.compareTo(currentRoot.data) > 0) {
-				if (currentRoot.right != null) {
-					add2(currentRoot.right, newNode);
-				}
-				else currentRoot.right = newNode;
-				size++;
-				return;
+		//right heavy
+		if (factor < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right); //right-left case
 			}
+			return rotateLeft(node);
 		}
+		return node;
+	}
+	
+	/**
+	 * Additional method to add a new node to the tree
+	 * void return type, not boolean
+	 * @param data the data to add to the tree
+	 */
+	public void add2(E data) {
+		//goes through add so that the tree stays balanced
+		add(data);
 	}
 	
 	/**
@@ -554,10 +631,55 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	 * This method removes all nodes from the BST
 	 */
 	public void clear() {
+		checkWritable();
 		root = null;
 		size = 0;
+		modCount++;
 	}
-	
+
+	/**
+	 * Replaces everything in the tree with the specified data, which must already be in increasing order
+	 * without duplicates. The middle element of each range becomes the root of that range, so the tree is
+	 * as balanced as it can be and is built in linear time, with no rotations.
+	 * @param sorted the data to put in the tree, in increasing order
+	 * @param count the number of elements of sorted to use, starting from the first
+	 * @throws IllegalArgumentException if an element is null, or the elements are not in increasing order
+	 */
+	public void buildBalanced(E[] sorted, int count) {
+		checkWritable();
+		if (count < 0 || count > sorted.length) {
+			throw new IllegalArgumentException("Invalid count. The array has "+sorted.length+" elements.");
+		}
+		for (int i = 0; i < count; i++) {
+			if (sorted[i] == null) {
+				throw new IllegalArgumentException("Invalid data. Null cannot be added to the tree.");
+			}
+			if (i > 0 && sorted[i - 1].compareTo(sorted[i]) >= 0) {
+				throw new IllegalArgumentException("Invalid data. The elements must be in increasing order.");
+			}
+		}
+		root = buildBalanced(sorted, 0, count);
+		size = count;
+		modCount++;
+	}
+
+	/**
+	 * Private recursive method to build a balanced subtree from a range of sorted data.
+	 * @param sorted the data, in increasing order
+	 * @param low the first element of the range
+	 * @param high one past the last element of the range
+	 * @return the root of the subtree, or null if the range is empty
+	 */
+	private Node<E> buildBalanced(E[] sorted, int low, int high) {
+		if (low >= high) {
+			return null;
+		}
+		int middle = (low + high) >>> 1;
+		Node<E> node = new Node<E>(sorted[middle], buildBalanced(sorted, low, middle), buildBalanced(sorted, middle + 1, high));
+		updateHeight(node);
+		return node;
+	}
+
 	/**
 	 * Checks if the BST contains the specified object
 	 * @return true if it contains the specified object o, and false if it does not contain o
@@ -568,7 +690,7 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 			if (data == null || isEmpty()) {
 				return false;
 			}
-			return contains(data, root);
+			return find(data) != null;
 		}
 		//if Object o is not of type E, then it cannot possibly be in the BST
 		catch (ClassCastException e){
@@ -576,28 +698,6 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 		}
 	}
 	
-	/**
-	 * Private recursive method that checks if the BST contains the specified object
-	 * @param data the data we want to find
-	 * @param node the node that we are currently checking against in the tree 
-	 * @return true if the BST contains the specified object o, 
-	 * and false if it does not contain o
-	 */
-	private boolean contains(E data, Node<E> node) {
-		if (node != null) {
-			if (data.compareTo(node.data) == 0) {
-				return true;
-			}
-			if (data.compareTo(node.data) < 0) {
-				return contains(data, node.left);
-			}
-			if (data.compareTo(node.data) > 0) {
-				return contains(data, node.right);
-			}
-		}
-		return false;
-	}
-	
 	/**
 	 * Checks if this BST contains all of the data in the specified collection
 	 * @return true if it contains all the data, and return false if it does not 
@@ -642,12 +742,46 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 		return new inorderIterator();
 	}
 	
+	/**
+	 * Returns a view of the data in the tree from fromElement to toElement, inorder.
+	 * The view is lazy: each iterator over it descends the tree once to the first element in range, 
+	 * and then stops at the first element past the end, so it takes O(log n + k) time for k elements.
+	 * The view always reflects the current contents of the tree.
+	 * @param fromElement the low end of the range
+	 * @param fromInclusive true if the low end itself is in the range
+	 * @param toElement the high end of the range
+	 * @param toInclusive true if the high end itself is in the range
+	 * @return the data in the range, inorder
+	 * @throws IllegalArgumentException if an end of the range is null, or fromElement is greater than toElement
+	 */
+	public Iterable<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+		if (fromElement == null || toElement == null) {
+			throw new IllegalArgumentException("The ends of the range cannot be null.");
+		}
+		if (fromElement.compareTo(toElement) > 0) {
+			throw new IllegalArgumentException("The start of the range is greater than its end.");
+		}
+		return () -> new inorderIterator(fromElement, fromInclusive, toElement, toInclusive);
+	}
+	
+	/**
+	 * Returns a view of the data in the tree from fromElement, inclusive, to toElement, exclusive, inorder.
+	 * @param fromElement the low end of the range, inclusive
+	 * @param toElement the high end of the range, exclusive
+	 * @return the data in the range, inorder
+	 * @throws IllegalArgumentException if an end of the range is null, or fromElement is greater than toElement
+	 */
+	public Iterable<E> subSet(E fromElement, E toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+	
 	/**
 	 * Removes the specified object from the BST if present
 	 * @return true if the object is found and removed, 
 	 * and return false if the object is not found and removed
 	 */
 	public boolean remove(Object o) {
+		checkWritable();
 		try {
 			E data = (E)o; // try to cast from object to E
 			
@@ -657,6 +791,7 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 			}
 			
 			root = remove(data, root);
+			modCount++;
 			
 			//successfully removed! 
 			return true;
@@ -699,6 +834,7 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 					node.right = remove(data, node.right);
 				}
 			}
+			return balance(node); //rebalance on the way back up
 		}
 		return node; //node is null
 	}
@@ -743,7 +879,7 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 			 * decremented twice!
 			 */
 			node.right = remove(copyOfData, node.right);
-			return node; //finally, return this node back to its proper branch
+			return balance(node); //finally, rebalance and return this node back to its proper branch
 		}
 	}
 
@@ -853,55 +989,60 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	/**
 	 * This class implements Iterator<E>, and is instantiated when the preorderIterator() is called
 	 * it returns an iterator which traverses the tree using an preorder traversal.
+	 * The traversal is lazy: it only keeps a stack of the nodes still to be visited, 
+	 * which never holds more than the height of the tree.
 	 * @author atara
 	 */
 	private class preorderIterator implements Iterator<E> {
 		//instance variables
-		private ArrayList<E> storage; //ArrayList to store all of the data in the tree
-		private int storageIndex; //the current index in storage
+		private Node<E>[] stack; //the nodes whose subtrees are still to be visited
+		private int top; //the number of nodes on the stack
+		private int expectedModCount; //the modCount of the tree when this iterator was created
 		
 		/**
 		 * Constructs a new iterator, to traverse in preorder
-		 * Creates and puts all of the tree's data in an arraylist by calling the myPreorderIterator method
+		 * Starts with only the root on the stack
 		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
 		public preorderIterator() {
-			storage = new ArrayList<>();
-			storageIndex = 0;
-			myPreorderIterator(root, storage);
-		}
-		
-		/**
-		 * Private recursive method to fill the storage list with the tree's data the preorder traversal.
-		 * @param node the node we are traversing
-		 * @param storage the arraylist that is being filled with the data from the tree
-		 */
-		private void myPreorderIterator(Node<E> node, ArrayList<E> storage) {
-			if (node != null) {
-				storage.add(node.data);
-				myPreorderIterator(node.left, storage);
-				myPreorderIterator(node.right, storage);
+			stack = (Node<E>[]) new Node[height(root) + 1];
+			top = 0;
+			expectedModCount = modCount;
+			if (root != null) {
+				stack[top++] = root;
 			}
 		}
 		
 		/**
 		 * This method checks if there is another node in the tree to iterate.
-		 * It returns true when the index we are at is less than the amount of data in the list, 
+		 * It returns true when there are still nodes on the stack, 
 		 * meaning we still have more data to traverse
 		 * @return true if there is more data to traverse, false if there is no more data to traverse
 		 */
 		public boolean hasNext() {
-			if (storageIndex < storage.size()) {
-				return true;
-			}
-			return false;
+			return top > 0;
 		}
 
 		/**
 		 * This method advances the iterator to the next node in the tree.
 		 * @return the data from the next node in the tree
+		 * @throws NoSuchElementException if there is no more data to traverse
+		 * @throws ConcurrentModificationException if the tree was changed after this iterator was created
 		 */
 		public E next() {
-			return storage.get(storageIndex++);
+			checkForComodification(expectedModCount);
+			if (top == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<E> node = stack[--top];
+			//push the right child first, so that the left subtree is visited before it
+			if (node.right != null) {
+				stack[top++] = node.right;
+			}
+			if (node.left != null) {
+				stack[top++] = node.left;
+			}
+			return node.data;
 		}
 		
 		/**
@@ -917,55 +1058,66 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	/**
 	 * This class implements Iterator<E>, and is instantiated when the postorderIterator() is called
 	 * it returns an iterator which traverses the tree using an postorder traversal.
+	 * The traversal is lazy: it only keeps a stack of the nodes on the path to the next node, 
+	 * which never holds more than the height of the tree.
 	 * @author atara
 	 */
 	private class postorderIterator implements Iterator<E> {
 		//instance variables
-		private ArrayList<E> storage; //ArrayList to store all of the data in the tree
-		private int storageIndex; //the current index in storage
+		private Node<E>[] stack; //the path from the root to the next node to visit
+		private int top; //the number of nodes on the stack
+		private int expectedModCount; //the modCount of the tree when this iterator was created
 		
 		/**
 		 * Constructs a new treeIterator, to traverse in postorder
-		 * Creates and puts all of the tree's data in an arraylist by calling the myPostorderIterator method
+		 * Pushes the path down to the first node in postorder, the leftmost leaf
 		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
 		public postorderIterator() {
-			storage = new ArrayList<>();
-			storageIndex = 0;
-			myPostorderIterator(root, storage);
+			stack = (Node<E>[]) new Node[height(root)];
+			top = 0;
+			expectedModCount = modCount;
+			pushLeftmostLeaf(root);
 		}
 		
 		/**
-		 * Private recursive method to fill the storage list with the tree's data in postorder traversal.
-		 * @param node the node we are traversing
-		 * @param storage the arraylist that is being filled with the data from the tree
+		 * Private method to push the path from node down to the leftmost leaf of its subtree.
+		 * @param node the root of the subtree to descend
 		 */
-		private void myPostorderIterator(Node<E> node, ArrayList<E> storage) {
-			if (node != null) {
-				myPostorderIterator(node.left, storage);
-				myPostorderIterator(node.right, storage);
-				storage.add(node.data);
+		private void pushLeftmostLeaf(Node<E> node) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left != null ? node.left : node.right;
 			}
 		}
 		
 		/**
 		 * This method checks if there is another node in the tree to iterate.
-		 * It returns true when the index we are at is less than the amount of data in the list, 
+		 * It returns true when there are still nodes on the stack, 
 		 * meaning we still have more data to traverse
 		 * @return true if there is more data to traverse, false if there is no more data to traverse
 		 */
 		public boolean hasNext() {
-			if (storageIndex < storage.size()) {
-				return true;
-			}
-			return false;
+			return top > 0;
 		}
 
 		/**
 		 * This method advances the iterator to the next node in the tree.
 		 * @return the data from the next node in the tree
+		 * @throws NoSuchElementException if there is no more data to traverse
+		 * @throws ConcurrentModificationException if the tree was changed after this iterator was created
 		 */
 		public E next() {
-			return storage.get(storageIndex++);
+			checkForComodification(expectedModCount);
+			if (top == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<E> node = stack[--top];
+			//coming back up from a left child, so the right subtree of the parent is next
+			if (top > 0 && stack[top - 1].left == node) {
+				pushLeftmostLeaf(stack[top - 1].right);
+			}
+			return node.data;
 		}
 		
 		/**
@@ -981,55 +1133,101 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 	/**
 	 * This class implements Iterator<E>, and is instantiated when the iterator() is called
 	 * it returns an iterator which traverses the tree using an inorder traversal.
+	 * The traversal is lazy: it only keeps a stack of the nodes whose data and right subtrees 
+	 * are still to be visited, which never holds more than the height of the tree.
+	 * It can also be limited to a range of the data, for the subSet views.
 	 * @author atara
 	 */
 	private class inorderIterator implements Iterator<E> {
 		//instance variables
-		private ArrayList<E> storage; //ArrayList to store all of the data in the tree
-		private int storageIndex; //the current index in storage
+		private Node<E>[] stack; //the nodes whose data and right subtrees are still to be visited
+		private int top; //the number of nodes on the stack
+		private int expectedModCount; //the modCount of the tree when this iterator was created
+		private E high; //the high end of the range, or null if there is none
+		private boolean highInclusive; //true if high itself is in the range
 		
 		/**
 		 * Constructs a new treeIterator, to traverse inorder
-		 * Creates and puts all of the tree's data in an arraylist by calling the inorderIterator method
+		 * Pushes the path down to the first node inorder, the leftmost node
 		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
 		public inorderIterator() {
-			storage = new ArrayList<>();
-			storageIndex = 0;
-			myInorderIterator(root, storage);
+			stack = (Node<E>[]) new Node[height(root)];
+			top = 0;
+			expectedModCount = modCount;
+			pushLeft(root);
 		}
 		
 		/**
-		 * Private recursive method to fill the storage list with the tree's data inorder.
-		 * @param node the node we are traversing
-		 * @param storage the arraylist that is being filled with the data from the tree
+		 * Constructs a new treeIterator, to traverse the data in a range inorder
+		 * Pushes the path down to the first node in the range, skipping the subtrees below it
+		 * @param low the low end of the range
+		 * @param lowInclusive true if low itself is in the range
+		 * @param high the high end of the range
+		 * @param highInclusive true if high itself is in the range
 		 */
-		private void myInorderIterator(Node<E> node, ArrayList<E> storage) {
-			if (node != null) {
-				myInorderIterator(node.left, storage);
-				storage.add(node.data);
-				myInorderIterator(node.right, storage);
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public inorderIterator(E low, boolean lowInclusive, E high, boolean highInclusive) {
+			stack = (Node<E>[]) new Node[height(root)];
+			top = 0;
+			expectedModCount = modCount;
+			this.high = high;
+			this.highInclusive = highInclusive;
+			Node<E> node = root;
+			while (node != null) {
+				int cmp = node.data.compareTo(low);
+				if (cmp > 0 || (cmp == 0 && lowInclusive)) {
+					stack[top++] = node; //in range, and so might be something to its left
+					node = node.left;
+				}
+				else {
+					node = node.right; //too small, and so is its whole left subtree
+				}
+			}
+		}
+		
+		/**
+		 * Private method to push node and all of its left descendants onto the stack.
+		 * @param node the root of the subtree to descend
+		 */
+		private void pushLeft(Node<E> node) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
 			}
 		}
 		
 		/**
 		 * This method checks if there is another node in the tree to iterate.
-		 * It returns true when the index we are at is less than the amount of data in the list, 
+		 * It returns true when there are still nodes on the stack, 
 		 * meaning we still have more data to traverse
 		 * @return true if there are more nodes to traverse, false if there are no more to traverse
 		 */
 		public boolean hasNext() {
-			if (storageIndex < storage.size()) {
+			if (top == 0) {
+				return false;
+			}
+			if (high == null) {
 				return true;
 			}
-			return false;
+			int cmp = stack[top - 1].data.compareTo(high); //the next node is past the end of the range
+			return cmp < 0 || (cmp == 0 && highInclusive);
 		}
 
 		/**
 		 * This method advances the iterator to the next node in the tree.
-		 * @return the data from the netx node in the tree
+		 * @return the data from the next node in the tree
+		 * @throws NoSuchElementException if there is no more data to traverse
+		 * @throws ConcurrentModificationException if the tree was changed after this iterator was created
 		 */
 		public E next() {
-			return storage.get(storageIndex++);
+			checkForComodification(expectedModCount);
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node<E> node = stack[--top];
+			pushLeft(node.right);
+			return node.data;
 		}
 		
 		/**
@@ -1040,6 +1238,43 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 			throw new UnsupportedOperationException("Invalid operation.");
 		}
 	} //end of nested inorder iterator class
+	
+	/**
+	 * Makes the tree read only: from now on, every method that would change it throws an exception instead.
+	 * A read only tree can be shared by any number of threads, such as the list of a published snapshot or a cached search result.
+	 */
+	public void makeReadOnly() {
+		readOnly = true;
+	}
+	
+	/**
+	 * Checks if the tree is read only.
+	 * @return true if the tree can no longer be changed
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+	
+	/**
+	 * Checks that the tree can still be changed, before a change.
+	 * @throws UnsupportedOperationException if the tree is read only
+	 */
+	protected void checkWritable() {
+		if (readOnly) {
+			throw new UnsupportedOperationException("This list is read only.");
+		}
+	}
+	
+	/**
+	 * Checks that the tree has not been structurally changed since an iterator was created.
+	 * @param expectedModCount the modCount of the tree when the iterator was created
+	 * @throws ConcurrentModificationException if the tree has been changed
+	 */
+	private void checkForComodification(int expectedModCount) {
+		if (modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
 
 	
 	/**
@@ -1051,6 +1286,7 @@ public class BST<E extends Comparable<E>> implements Collection<E> {
 			protected E data = null; //generic type field to store the node's data
 			protected Node<E> left = null; //reference to left child
 			protected Node<E> right = null; //reference to right child
+			protected int height = 1; //height of the subtree rooted at this node
 			
 			/**
 			 * Constructs a new BST node with the specified data and references
@@ -0,0 +1,292 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class runs a file of queries without the interactive prompt, one query per line, as they would be
+ * typed at the prompt. Blank lines are skipped, and a line with quit ends the batch.
+ *
+ * The queries are read in windows of a few thousand, and the queries of a window are run in parallel, all
+ * on the same snapshot of the movies. The results are then written in the order of the queries through
+ * one buffered stream. Each result is either the query, after "> ", followed by the text the prompt would
+ * print, or one line of JSON (JSON Lines) with the query, its status and the movies or completions found.
+ * In text, the movies are written from the UTF-8 bytes each movie keeps, so a movie found by many queries
+ * is only rendered once.
+ * @author atara
+ */
+public class BatchQueries {
+	
+	private static final int WINDOW = 4096; //the most queries run in parallel at once
+	private static final int COMPLETIONS = 10; //the completions returned for each prefix
+	
+	//instance variables of BatchQueries
+	private final ConcurrentMovieCatalog catalog; //the movies searched
+	private final boolean json; //true to write JSON Lines, false to write text
+	
+	/**
+	 * Constructs a batch runner over the specified catalog.
+	 * @param catalog the movies to search
+	 * @param json true to write JSON Lines, false to write text
+	 */
+	public BatchQueries(ConcurrentMovieCatalog catalog, boolean json) {
+		this.catalog = catalog;
+		this.json = json;
+	}
+	
+	/**
+	 * Runs every query read from the input and writes the results to the output. The output is
+	 * flushed but not closed.
+	 * @param in the queries, one per line
+	 * @param out where the results are written, in UTF-8
+	 * @return the number of queries run
+	 * @throws IOException if the queries cannot be read or the results cannot be written
+	 */
+	public int run(Reader in, OutputStream out) throws IOException {
+		BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+		OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+		int total = 0;
+		boolean done = false;
+		List<String> window = new ArrayList<>(WINDOW);
+		while (!done) {
+			window.clear();
+			String line;
+			while (window.size() < WINDOW && (line = lines.readLine()) != null) {
+				if (line.equalsIgnoreCase("quit")) {
+					break;
+				}
+				if (!line.trim().isEmpty()) {
+					window.add(line);
+				}
+			}
+			done = window.size() < WINDOW; //the input ended, or quit was read
+			
+			ConcurrentMovieCatalog.Snapshot snapshot = catalog.current(); //the same movies for the whole window
+			Result[] results = new Result[window.size()];
+			IntStream.range(0, results.length).parallel().forEach(i -> results[i] = render(window.get(i), snapshot));
+			for (Result result : results) {
+				result.writeTo(buffered);
+			}
+			total += results.length;
+		}
+		buffered.flush();
+		return total;
+	}
+	
+	/**
+	 * Runs one query and renders its result. In text, the movies found are not copied into the result:
+	 * they are rendered here, in parallel, and written later from the bytes they keep.
+	 * @param line the query
+	 * @param snapshot the movies to search
+	 * @return the result, ending with a line break
+	 */
+	private Result render(String line, ConcurrentMovieCatalog.Snapshot snapshot) {
+		StringBuilder result = new StringBuilder();
+		Query query;
+		try {
+			query = Query.parse(line);
+		} catch (IllegalArgumentException e) {
+			return invalid(line, e.getMessage());
+		}
+		
+		if (query.isCompletion()) {
+			List<String> completions = query.complete(snapshot.getSuggestions(), COMPLETIONS);
+			if (json) {
+				startJson(result, line, completions.isEmpty());
+				result.append(",\"completions\":[");
+				for (int i = 0; i < completions.size(); i++) {
+					if (i > 0) {
+						result.append(',');
+					}
+					quote(result, completions.get(i));
+				}
+				return new Result(result.append("]}\n").toString(), null);
+			}
+			result.append("> ").append(line).append('\n');
+			if (completions.isEmpty()) {
+				return new Result(result.append("No matches found.\n").toString(), null);
+			}
+			for (String completion : completions) {
+				result.append(completion).append('\n');
+			}
+			return new Result(result.toString(), null);
+		}
+		
+		MovieList found;
+		try {
+			found = query.run(snapshot.getCatalog());
+		} catch (IllegalArgumentException e) { //so one bad query does not end the whole batch
+			return invalid(line, e.getMessage());
+		}
+		if (json) {
+			startJson(result, line, found == null);
+			result.append(",\"count\":").append(found == null ? 0 : found.size()).append(",\"movies\":[");
+			if (found != null) {
+				boolean first = true;
+				for (Movie m : found) {
+					if (!first) {
+						result.append(',');
+					}
+					first = false;
+					appendJson(result, m);
+				}
+			}
+			return new Result(result.append("]}\n").toString(), null);
+		}
+		result.append("> ").append(line).append('\n');
+		if (found == null) {
+			return new Result(result.append("No matches found.\n").toString(), null);
+		}
+		for (Movie m : found) {
+			m.renderedBytes(); //rendered now, in parallel, rather than while the results are written
+		}
+		return new Result(result.toString(), found);
+	}
+	
+	/**
+	 * Renders the result of a query which could not be parsed or run.
+	 * @param line the query
+	 * @param message why it is not valid
+	 * @return the result, ending with a line break
+	 */
+	private Result invalid(String line, String message) {
+		StringBuilder result = new StringBuilder();
+		if (json) {
+			result.append("{\"query\":");
+			quote(result, line);
+			result.append(",\"status\":\"invalid\",\"error\":");
+			quote(result, message);
+			return new Result(result.append("}\n").toString(), null);
+		}
+		return new Result(result.append("> ").append(line).append('\n').append(message).append('\n').toString(), null);
+	}
+	
+	/**
+	 * Starts the JSON object of a query which was run.
+	 * @param result where the JSON is written
+	 * @param line the query
+	 * @param none true if nothing was found
+	 */
+	private static void startJson(StringBuilder result, String line, boolean none) {
+		result.append("{\"query\":");
+		quote(result, line);
+		result.append(",\"status\":\"").append(none ? "none" : "ok").append('"');
+	}
+	
+	/**
+	 * Writes a movie as a JSON object.
+	 * @param result where the JSON is written
+	 * @param m the movie
+	 */
+	static void appendJson(StringBuilder result, Movie m) {
+		result.append("{\"title\":");
+		quote(result, m.getTitle());
+		result.append(",\"year\":").append(m.getYear()).append(",\"director\":");
+		quote(result, m.getDirector());
+		result.append(",\"writer\":");
+		quote(result, m.getWriter());
+		result.append(",\"actors\":[");
+		boolean first = true;
+		for (Actor actor : new Actor[] {m.getActor1(), m.getActor2(), m.getActor3()}) {
+			if (actor != null) {
+				if (!first) {
+					result.append(',');
+				}
+				first = false;
+				quote(result, actor.getName());
+			}
+		}
+		result.append("],\"locations\":[");
+		first = true;
+		for (Location loc : m.getSfLocations()) {
+			if (!first) {
+				result.append(',');
+			}
+			first = false;
+			result.append("{\"location\":");
+			quote(result, loc.getLocationName());
+			result.append(",\"funFact\":");
+			quote(result, loc.getFunFact());
+			result.append('}');
+		}
+		result.append("]}");
+	}
+	
+	/**
+	 * This class is the rendered result of one query: its text, and in text mode the movies found,
+	 * which are written after it from the bytes they keep.
+	 */
+	private static class Result {
+		private final byte[] text; //the whole result, or the lines before the movies
+		private final MovieList movies; //the movies found, or null if the text is the whole result
+		
+		/**
+		 * Constructs a rendered result.
+		 * @param text the whole result, or the lines before the movies
+		 * @param movies the movies found, or null
+		 */
+		private Result(String text, MovieList movies) {
+			this.text = text.getBytes(StandardCharsets.UTF_8);
+			this.movies = movies;
+		}
+		
+		/**
+		 * Writes the result, the same as the prompt would print it.
+		 * @param out where to write it
+		 * @throws IOException if out cannot be written to
+		 */
+		private void writeTo(OutputStream out) throws IOException {
+			out.write(text);
+			if (movies != null) {
+				movies.writeTo(out);
+				out.write('\n');
+			}
+		}
+	}
+	
+	/**
+	 * Writes a string as a JSON string, escaping quotes, backslashes and control characters.
+	 * @param result where the JSON is written
+	 * @param s the string, or null
+	 */
+	static void quote(StringBuilder result, String s) {
+		if (s == null) {
+			result.append("null");
+			return;
+		}
+		result.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					result.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					result.append(c);
+				}
+			}
+		}
+		result.append('"');
+	}
+}
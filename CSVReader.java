@@ -0,0 +1,139 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * This class reads the records of a CSV file one at a time, into a CSVRecord that is reused for every record.
+ * It follows the same rules as SFMovieData.splitCSVLine: straight and curly double quotes both start
+ * and end a quoted entry and are dropped, commas inside quotes are kept, white space outside of an entry
+ * is skipped, and the last entry is only kept if it is not empty.
+ *
+ * The characters are read straight out of a large buffer, without building a String for each line,
+ * and a record only ends at a line break that is outside of quotes, so quoted entries can span lines.
+ * @author atara
+ */
+public class CSVReader implements Closeable {
+	
+	//instance variables of CSVReader
+	private final Reader in; //where the characters come from
+	private final char[] buffer; //the characters read but not yet used
+	private int position; //the next character to use in buffer
+	private int limit; //the number of characters in buffer
+	private boolean skipLineFeed; //true if the last record ended with '\r', so a '\n' right after belongs to it
+	
+	/**
+	 * Constructs a new reader with a 64K character buffer.
+	 * @param in where to read the characters from; it does not need to be buffered
+	 */
+	public CSVReader(Reader in) {
+		this(in, 1 << 16);
+	}
+	
+	/**
+	 * Constructs a new reader.
+	 * @param in where to read the characters from; it does not need to be buffered
+	 * @param bufferSize the number of characters to read at once
+	 * @throws IllegalArgumentException if in is null or bufferSize is not positive
+	 */
+	public CSVReader(Reader in, int bufferSize) {
+		if (in == null) {
+			throw new IllegalArgumentException("The reader cannot be null.");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size must be positive.");
+		}
+		this.in = in;
+		buffer = new char[bufferSize];
+	}
+	
+	/**
+	 * Reads the next record into the specified record, replacing what it held before.
+	 * A blank line is read as a record with no fields.
+	 * @param record the record to fill
+	 * @return true if a record was read, false if the end of the input was reached first
+	 * @throws IOException if the input cannot be read
+	 */
+	public boolean next(CSVRecord record) throws IOException {
+		record.clear();
+		boolean insideQuotes = false;
+		boolean insideEntry = false;
+		boolean readAny = false;
+		while (true) {
+			if (position == limit && !fill()) {
+				if (!readAny) {
+					return false;
+				}
+				break;
+			}
+			char c = buffer[position++];
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			readAny = true;
+			if (!insideQuotes && (c == '\n' || c == '\r')) {
+				skipLineFeed = c == '\r';
+				break;
+			}
+			if (c == '"' || c == '\u201C' || c == '\u201D') {
+				if (insideQuotes) {
+					insideEntry = false;
+				}
+				else {
+					insideEntry = true;
+				}
+				insideQuotes = !insideQuotes;
+			}
+			else if (Character.isWhitespace(c)) {
+				if (insideQuotes || insideEntry) {
+					record.append(c);
+				}
+			}
+			else if (c == ',') {
+				if (insideQuotes) {
+					record.append(c);
+				}
+				else {
+					record.endField(false);
+					insideEntry = false;
+				}
+			}
+			else {
+				record.append(c);
+				insideEntry = true;
+			}
+		}
+		if (record.pendingLength() > 0) {
+			record.endField(true);
+		}
+		return true;
+	}
+	
+	/**
+	 * Refills the buffer from the input.
+	 * @return true if more characters were read, false at the end of the input
+	 * @throws IOException if the input cannot be read
+	 */
+	private boolean fill() throws IOException {
+		int count;
+		do {
+			count = in.read(buffer, 0, buffer.length);
+		} while (count == 0);
+		if (count < 0) {
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+	
+	/**
+	 * Closes the underlying reader.
+	 * @throws IOException if the reader cannot be closed
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+/**
+ * This class holds the fields of one record read by a CSVReader.
+ * The same record is meant to be reused for every line: all the fields are kept in one shared
+ * char array, and a String is only created when a field is asked for with get.
+ * @author atara
+ */
+public class CSVRecord {
+	
+	//instance variables of CSVRecord
+	private char[] chars = new char[256]; //the characters of all the fields, one after the other
+	private int length; //the number of characters used in chars
+	private int[] starts = new int[16]; //where each field starts in chars
+	private int[] ends = new int[16]; //where each field ends in chars
+	private int size; //the number of fields
+	
+	/**
+	 * Returns the number of fields in the record.
+	 * @return the number of fields
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the length of the specified field, before it is trimmed.
+	 * @param i the index of the field
+	 * @return the number of characters in the field
+	 * @throws IndexOutOfBoundsException if there is no such field
+	 */
+	public int length(int i) {
+		checkIndex(i);
+		return ends[i] - starts[i];
+	}
+	
+	/**
+	 * Returns the specified field, with white space trimmed from both ends.
+	 * @param i the index of the field
+	 * @return the trimmed field
+	 * @throws IndexOutOfBoundsException if there is no such field
+	 */
+	public String get(int i) {
+		checkIndex(i);
+		int start = trimStart(i);
+		return new String(chars, start, trimEnd(i) - start);
+	}
+	
+	/**
+	 * Returns the specified field, with white space trimmed from both ends, from the specified pool.
+	 * No String is created if the pool already has one with the same characters.
+	 * @param i the index of the field
+	 * @param pool the pool to take the string from
+	 * @return the trimmed field
+	 * @throws IndexOutOfBoundsException if there is no such field
+	 */
+	public String get(int i, IngestPool pool) {
+		checkIndex(i);
+		return pool.intern(chars, trimStart(i), trimEnd(i));
+	}
+
+	/**
+	 * Parses the specified field as a decimal int, ignoring white space at both ends,
+	 * without creating a String for it.
+	 * @param i the index of the field
+	 * @return the value of the field
+	 * @throws NumberFormatException if the field is not a valid int
+	 * @throws IndexOutOfBoundsException if there is no such field
+	 */
+	public int getInt(int i) {
+		checkIndex(i);
+		int start = trimStart(i);
+		int end = trimEnd(i);
+		boolean negative = start < end && chars[start] == '-';
+		int position = negative || (start < end && chars[start] == '+') ? start + 1 : start;
+		if (position == end) {
+			throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+		}
+		long value = 0;
+		for (; position < end; position++) {
+			int digit = Character.digit(chars[position], 10);
+			value = value * 10 + digit;
+			if (digit < 0 || value > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+			}
+		}
+		if (!negative && value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+		}
+		return (int) (negative ? -value : value);
+	}
+	
+	/**
+	 * Returns the string representation of this record, its fields separated by commas.
+	 * @return the string representation of this record
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				result.append(',');
+			}
+			result.append(chars, starts[i], ends[i] - starts[i]);
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Removes all the fields, so that the record can be filled again.
+	 */
+	void clear() {
+		length = 0;
+		size = 0;
+	}
+	
+	/**
+	 * Adds a character to the field being read.
+	 * @param c the character to add
+	 */
+	void append(char c) {
+		if (length == chars.length) {
+			chars = Arrays.copyOf(chars, length * 2);
+		}
+		chars[length++] = c;
+	}
+	
+	/**
+	 * Ends the field being read, which started where the previous field ended.
+	 * @param trim true to trim white space from the end of the field, as is done for the last field
+	 */
+	void endField(boolean trim) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+		}
+		int start = size == 0 ? 0 : ends[size - 1];
+		starts[size] = start;
+		ends[size] = length;
+		size++;
+		if (trim) {
+			int trimmedStart = trimStart(size - 1);
+			int trimmedEnd = trimEnd(size - 1);
+			starts[size - 1] = trimmedStart;
+			ends[size - 1] = trimmedEnd;
+		}
+	}
+	
+	/**
+	 * Returns the number of characters in the field being read so far.
+	 * @return the length of the field being read
+	 */
+	int pendingLength() {
+		return length - (size == 0 ? 0 : ends[size - 1]);
+	}
+	
+	/**
+	 * Finds the first character of the field that is not white space, the same way String.trim does.
+	 * @param i the index of the field
+	 * @return the position of the first character to keep
+	 */
+	private int trimStart(int i) {
+		int start = starts[i];
+		while (start < ends[i] && chars[start] <= ' ') {
+			start++;
+		}
+		return start;
+	}
+	
+	/**
+	 * Finds the end of the field without its trailing white space, the same way String.trim does.
+	 * @param i the index of the field
+	 * @return one past the position of the last character to keep
+	 */
+	private int trimEnd(int i) {
+		int end = ends[i];
+		while (end > starts[i] && chars[end - 1] <= ' ') {
+			end--;
+		}
+		return end;
+	}
+	
+	/**
+	 * Checks that the specified field exists.
+	 * @param i the index of the field
+	 * @throws IndexOutOfBoundsException if there is no such field
+	 */
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Field " + i + " of " + size);
+		}
+	}
+}
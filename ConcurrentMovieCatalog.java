@@ -0,0 +1,429 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class lets any number of threads search the movies while the data set is loaded again in the background.
+ *
+ * The movies, their search index and their suggestions are published together as one Snapshot, which is never
+ * changed once it is published. A search reads the current snapshot once and runs on it alone, so it never
+ * waits for a lock and never sees a list that is only partly loaded. A reload builds a whole new snapshot on
+ * a background thread and then swaps it in with one atomic write; searches already running finish on the
+ * old snapshot, which is garbage collected once the last of them is done. If a reload fails, the old snapshot
+ * stays in place.
+ *
+ * Single movies can also be added without a reload. The movies added since the data set was loaded are kept
+ * in a PersistentBST, so adding one copies only the O(log n) nodes on its path and publishes a new snapshot
+ * which shares everything else with the old one. Searches merge the matching added movies into the results
+ * of the loaded catalog. A reload keeps the added movies that the data set does not have yet.
+ * @author atara
+ */
+public class ConcurrentMovieCatalog implements MovieCatalog, Closeable {
+	
+	/**
+	 * This interface loads a new snapshot of the data set.
+	 */
+	public interface Loader {
+		
+		/**
+		 * Loads the movies and builds everything that is searched.
+		 * @return the new snapshot, whose list must not be changed afterwards
+		 * @throws IOException if the data set cannot be read
+		 */
+		Snapshot load() throws IOException;
+	}
+	
+	/**
+	 * This class is one version of the data set: the catalog searched, the suggestions, the movies added since
+	 * the load, and the list of movies when the searches run on it. None of them is changed after the snapshot
+	 * is published, so they can be shared by all threads. When the searches run on another store, the list is
+	 * not kept, so that it can be garbage collected once the store and the suggestions are built from it.
+	 */
+	public static final class Snapshot {
+		private final MovieList list; //the movies, with their search index, or null if the searches run on another store
+		private final MovieCatalog catalog; //what the searches run on: the list, or another store of the same movies
+		private final Autocomplete suggestions; //for completing the start of titles and names
+		private final PersistentBST<Movie> added; //the movies added since the load, sharing nodes with the versions before
+		private final MovieCatalog searched; //the catalog together with the added movies
+		private final long loadedAt; //the time the data set was loaded, in milliseconds
+		
+		/**
+		 * Makes a snapshot of the specified movies.
+		 * @param list the movies, with their search index if there is one, or null if the searches do not run on them
+		 * @param catalog what the searches run on, made from the same movies
+		 * @param suggestions the suggestions, made from the same movies
+		 * @throws IllegalArgumentException if the catalog or suggestions are null
+		 */
+		public Snapshot(MovieList list, MovieCatalog catalog, Autocomplete suggestions) {
+			if (catalog == null || suggestions == null) {
+				throw new IllegalArgumentException("A snapshot needs a catalog and suggestions.");
+			}
+			this.list = list;
+			this.catalog = catalog;
+			this.suggestions = suggestions;
+			this.added = new PersistentBST<>();
+			this.searched = catalog;
+			this.loadedAt = System.currentTimeMillis();
+		}
+		
+		/**
+		 * Makes a snapshot of the same loaded movies with another version of the added movies.
+		 * @param loaded the snapshot the movies were loaded in
+		 * @param added the movies added since
+		 */
+		private Snapshot(Snapshot loaded, PersistentBST<Movie> added) {
+			this.list = loaded.list;
+			this.catalog = loaded.catalog;
+			this.suggestions = loaded.suggestions;
+			this.added = added;
+			this.searched = new Overlay(loaded.catalog, added);
+			this.loadedAt = loaded.loadedAt;
+		}
+		
+		/**
+		 * Returns a snapshot which also has the specified movie. This snapshot is left as it was.
+		 * @param movie the movie to add
+		 * @return the new snapshot, or null if this snapshot already has a movie with the same title and year
+		 */
+		Snapshot withMovie(Movie movie) {
+			if (added.contains(movie)) {
+				return null;
+			}
+			MovieList sameTitle = catalog.getMatchingTitles(movie.getTitle(), movie.getYear(), movie.getYear());
+			if (sameTitle != null) {
+				for (Movie m : sameTitle) {
+					if (m.equals(movie)) {
+						return null;
+					}
+				}
+			}
+			return new Snapshot(this, added.add(movie));
+		}
+		
+		/**
+		 * Returns the movies of this snapshot, which must not be changed, if the searches run on them.
+		 * The movies added since the load are not in it.
+		 * @return the list of movies, or null if the searches run on another store
+		 */
+		public MovieList getList() {
+			return list;
+		}
+		
+		/**
+		 * Returns what the searches of this snapshot run on, including the movies added since the load.
+		 * @return the catalog
+		 */
+		public MovieCatalog getCatalog() {
+			return searched;
+		}
+		
+		/**
+		 * Returns the movies added to this snapshot since the data set was loaded.
+		 * @return the added movies, in sorted order
+		 */
+		public PersistentBST<Movie> getAdded() {
+			return added;
+		}
+		
+		/**
+		 * Returns the query cache in front of the catalog of this snapshot.
+		 * @return the cache, or null if the searches are not cached
+		 */
+		public QueryCache getCache() {
+			return catalog instanceof QueryCache ? (QueryCache) catalog : null;
+		}
+		
+		/**
+		 * Returns the suggestions for the movies of this snapshot. They are made when the data set is loaded,
+		 * so the movies added since are only suggested after the next reload.
+		 * @return the suggestions
+		 */
+		public Autocomplete getSuggestions() {
+			return suggestions;
+		}
+		
+		/**
+		 * Returns the time the data set of this snapshot was loaded.
+		 * @return the time in milliseconds
+		 */
+		public long getLoadedAt() {
+			return loadedAt;
+		}
+	}
+	
+	//instance variables of ConcurrentMovieCatalog
+	private final Loader loader; //loads each new snapshot
+	private final AtomicReference<Snapshot> current; //the snapshot searches run on
+	private final ExecutorService reloader; //the one background thread that reloads, so reloads never overlap
+	private final AtomicLong reloads = new AtomicLong(); //the number of reloads that were swapped in
+	
+	/**
+	 * Loads the first snapshot, before returning, so the catalog can be searched at once.
+	 * @param loader loads each snapshot
+	 * @throws IOException if the data set cannot be read
+	 */
+	public ConcurrentMovieCatalog(Loader loader) throws IOException {
+		this.loader = loader;
+		this.current = new AtomicReference<>(loader.load());
+		this.reloader = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "movie-reloader");
+			thread.setDaemon(true); //a reload does not keep the program running
+			return thread;
+		});
+	}
+	
+	/**
+	 * Returns the current snapshot. A caller who runs several searches which should agree with each other
+	 * can run them all on the same snapshot.
+	 * @return the current snapshot
+	 */
+	public Snapshot current() {
+		return current.get();
+	}
+	
+	/**
+	 * Loads a new snapshot in the background and swaps it in when it is complete.
+	 * Searches keep running on the old snapshot until then. The movies added since the last load are
+	 * added to the new snapshot too, unless the data set now has them.
+	 * @return a future which completes with the new snapshot once it is in place, or exceptionally if
+	 * the reload failed and the old snapshot was kept
+	 */
+	public CompletableFuture<Snapshot> reloadInBackground() {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				Snapshot loaded = loader.load();
+				Snapshot previous;
+				Snapshot next;
+				do { //again if a movie was added while the added movies were carried over
+					previous = current.get();
+					next = loaded;
+					for (Movie m : previous.added) {
+						Snapshot with = next.withMovie(m);
+						if (with != null) {
+							next = with;
+						}
+					}
+				} while (!current.compareAndSet(previous, next));
+				reloads.incrementAndGet();
+				return next;
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, reloader);
+	}
+	
+	/**
+	 * Adds a movie without reloading the data set. The new snapshot shares all the movies of the current one,
+	 * and is swapped in at once; searches already running finish on the old one.
+	 * @param movie the movie to add, which must not be changed afterwards
+	 * @return true if the movie was added, or false if there already is a movie with the same title and year
+	 * @throws IllegalArgumentException if movie is null
+	 */
+	public boolean addMovie(Movie movie) {
+		if (movie == null) {
+			throw new IllegalArgumentException("The movie can't be null.");
+		}
+		while (true) { //again if another movie was added or a reload was swapped in meanwhile
+			Snapshot snapshot = current.get();
+			Snapshot next = snapshot.withMovie(movie);
+			if (next == null) {
+				return false;
+			}
+			if (current.compareAndSet(snapshot, next)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of reloads that have been swapped in.
+	 * @return the number of reloads
+	 */
+	public long reloads() {
+		return reloads.get();
+	}
+	
+	/**
+	 * Stops the background thread. Searches still work, on the last snapshot.
+	 */
+	@Override
+	public void close() {
+		reloader.shutdown();
+	}
+	
+	@Override
+	public int size() {
+		return current.get().searched.size();
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title) {
+		return current.get().searched.getMatchingTitles(title);
+	}
+	
+	@Override
+	public MovieList getMatchingActor(String actor) {
+		return current.get().searched.getMatchingActor(actor);
+	}
+	
+	@Override
+	public MovieList getMatchingYears(int from, int to) {
+		return current.get().searched.getMatchingYears(from, to);
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title, int from, int to) {
+		return current.get().searched.getMatchingTitles(title, from, to);
+	}
+	
+	@Override
+	public MovieList getMatchingActor(String actor, int from, int to) {
+		return current.get().searched.getMatchingActor(actor, from, to);
+	}
+	
+	/**
+	 * This class searches the loaded catalog and the movies added since, and merges their results.
+	 * The added movies are few, so they are scanned, except for the years, which are a range of the tree.
+	 */
+	private static final class Overlay implements MovieCatalog {
+		private final MovieCatalog catalog; //the loaded movies
+		private final PersistentBST<Movie> added; //the movies added since, none of which is in catalog
+		
+		/**
+		 * Constructs an overlay of the added movies over the loaded ones.
+		 * @param catalog the loaded movies
+		 * @param added the movies added since
+		 */
+		private Overlay(MovieCatalog catalog, PersistentBST<Movie> added) {
+			this.catalog = catalog;
+			this.added = added;
+		}
+		
+		@Override
+		public int size() {
+			return catalog.size() + added.size();
+		}
+		
+		@Override
+		public MovieList getMatchingTitles(String title) {
+			if (title == null || title.trim().length() == 0) {
+				return null;
+			}
+			return merge(catalog.getMatchingTitles(title), matchingTitles(added, MovieList.fold(title)));
+		}
+		
+		@Override
+		public MovieList getMatchingActor(String actor) {
+			if (actor == null || actor.trim().length() == 0) {
+				return null;
+			}
+			return merge(catalog.getMatchingActor(actor), matchingActors(added, MovieList.fold(actor)));
+		}
+		
+		@Override
+		public MovieList getMatchingYears(int from, int to) {
+			ArrayList<Movie> found = new ArrayList<>();
+			for (Movie m : years(from, to)) {
+				found.add(m);
+			}
+			return merge(catalog.getMatchingYears(from, to), found);
+		}
+		
+		@Override
+		public MovieList getMatchingTitles(String title, int from, int to) {
+			if (title == null || title.trim().length() == 0) {
+				return null;
+			}
+			return merge(catalog.getMatchingTitles(title, from, to), matchingTitles(years(from, to), MovieList.fold(title)));
+		}
+		
+		@Override
+		public MovieList getMatchingActor(String actor, int from, int to) {
+			if (actor == null || actor.trim().length() == 0) {
+				return null;
+			}
+			return merge(catalog.getMatchingActor(actor, from, to), matchingActors(years(from, to), MovieList.fold(actor)));
+		}
+		
+		/**
+		 * Returns the added movies released from the year from to the year to, inclusive, in sorted order.
+		 * @param from the first year
+		 * @param to the last year
+		 * @return the added movies in the range of years
+		 */
+		private Iterable<Movie> years(int from, int to) {
+			if (from > to) {
+				return Collections.emptyList();
+			}
+			int end = Math.min(to, Short.MAX_VALUE - 1) + 1; //clamped first so that it cannot overflow, as in MovieList
+			return added.subSet(Movie.yearBound(from), true, Movie.yearBound(end), false);
+		}
+		
+		/**
+		 * Returns the movies whose titles contain a keyword.
+		 * @param movies the movies to scan, in sorted order
+		 * @param keyword the folded keyword
+		 * @return the matching movies, in sorted order
+		 */
+		private static ArrayList<Movie> matchingTitles(Iterable<Movie> movies, String keyword) {
+			ArrayList<Movie> found = new ArrayList<>();
+			for (Movie m : movies) {
+				if (m.getTitleKey().contains(keyword)) {
+					found.add(m);
+				}
+			}
+			return found;
+		}
+		
+		/**
+		 * Returns the movies with an actor whose name contains a keyword.
+		 * @param movies the movies to scan, in sorted order
+		 * @param keyword the folded keyword
+		 * @return the matching movies, in sorted order
+		 */
+		private static ArrayList<Movie> matchingActors(Iterable<Movie> movies, String keyword) {
+			ArrayList<Movie> found = new ArrayList<>();
+			for (Movie m : movies) {
+				for (Actor actor : new Actor[] {m.getActor1(), m.getActor2(), m.getActor3()}) {
+					if (actor != null && actor.getNameKey().contains(keyword)) {
+						found.add(m);
+						break;
+					}
+				}
+			}
+			return found;
+		}
+		
+		/**
+		 * Merges the added movies that matched into the result of the loaded catalog, in sorted order.
+		 * The result of the catalog may be read only, so a new list is made.
+		 * @param found the result of the loaded catalog, or null
+		 * @param added the added movies that matched, in sorted order
+		 * @return a MovieList of all the matching movies, or null if there are none
+		 */
+		private static MovieList merge(MovieList found, ArrayList<Movie> added) {
+			if (added.isEmpty()) {
+				return found;
+			}
+			ArrayList<Movie> merged = new ArrayList<>(added.size() + (found == null ? 0 : found.size()));
+			int i = 0;
+			if (found != null) {
+				for (Movie m : found) {
+					while (i < added.size() && added.get(i).compareTo(m) < 0) {
+						merged.add(added.get(i++));
+					}
+					merged.add(m);
+				}
+			}
+			merged.addAll(added.subList(i, added.size()));
+			return MovieList.ofSorted(merged);
+		}
+	}
+}
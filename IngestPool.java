@@ -0,0 +1,237 @@
+import java.util.HashMap;
+
+/**
+ * This class makes sure that each distinct string read while loading the data set, and each distinct
+ * actor, only exists once on the heap. Every location row repeats the title, director, writer and actor
+ * names of its movie, so without a pool most of the strings made while loading are copies.
+ *
+ * Strings are looked up straight from the characters of a CSVRecord, so a string which is already in the
+ * pool is never created at all. The pool is only meant to be used while loading, and is then dropped.
+ * A pool is not thread safe, but many threads can each have a pool of their own which sends the strings it
+ * has not seen to one shared pool, so that the strings are still shared by all of them.
+ * @author atara
+ */
+public class IngestPool {
+	
+	//instance variables of IngestPool
+	private final IngestPool shared; //the pool this pool sends new strings and actors to, or null
+	private String[] table; //the strings in the pool, in an open addressing hash table
+	private int size; //the number of strings in the pool
+	private final HashMap<String, Actor> actors; //the canonical Actor for each name
+	private long lookups; //the number of strings asked for
+	private long bytesSaved; //the estimated heap size of all the copies that were not kept
+	
+	/**
+	 * Constructs a new, empty pool.
+	 */
+	public IngestPool() {
+		this(null);
+	}
+	
+	/**
+	 * Constructs a new, empty pool for one thread, which shares its strings and actors through another pool.
+	 * @param shared the pool shared by all threads, or null
+	 */
+	public IngestPool(IngestPool shared) {
+		this.shared = shared;
+		table = new String[1024];
+		actors = new HashMap<>();
+	}
+	
+	/**
+	 * Returns the pooled string with the specified characters, creating it only if it is not in the pool yet.
+	 * @param chars the characters
+	 * @param start the first character of the string
+	 * @param end one past the last character of the string
+	 * @return the string from the pool
+	 */
+	public String intern(char[] chars, int start, int end) {
+		lookups++;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars[i]; //the same as String.hashCode
+		}
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+			String s = table[slot];
+			if (s == null) {
+				String result = new String(chars, start, end - start);
+				if (shared != null) {
+					result = shared.internShared(result);
+				}
+				add(slot, result);
+				return result;
+			}
+			if (s.hashCode() == hash && matches(s, chars, start, end)) {
+				bytesSaved += SearchIndex.sizeOf(s);
+				return s;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the pooled string equal to the specified one, adding it if it is not in the pool yet.
+	 * @param s the string
+	 * @return the string from the pool, or null if s is null
+	 */
+	public String intern(String s) {
+		if (s == null) {
+			return null;
+		}
+		lookups++;
+		int mask = table.length - 1;
+		for (int slot = spread(s.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+			String pooled = table[slot];
+			if (pooled == null) {
+				String result = shared != null ? shared.internShared(s) : s;
+				add(slot, result);
+				return result;
+			}
+			if (pooled.equals(s)) {
+				if (pooled != s) {
+					bytesSaved += SearchIndex.sizeOf(s);
+				}
+				return pooled;
+			}
+		}
+	}
+	
+	/**
+	 * Interns a string in the shared pool for a pool of one thread.
+	 * @param s the string the other pool did not have
+	 * @return the string from this pool
+	 */
+	private synchronized String internShared(String s) {
+		long before = lookups;
+		String result = intern(s);
+		lookups = before; //already counted by the other pool
+		return result;
+	}
+	
+	/**
+	 * Returns the canonical Actor with the specified name, making it the first time the name is seen.
+	 * @param name the actor's name, which should come from this pool
+	 * @return the canonical Actor with that name
+	 * @throws IllegalArgumentException if the name is null or empty
+	 */
+	public Actor actor(String name) {
+		Actor actor = actors.get(name);
+		if (actor == null) {
+			actor = shared != null ? shared.actorShared(name) : new Actor(name);
+			actors.put(name, actor);
+		}
+		else {
+			bytesSaved += 24 + SearchIndex.sizeOf(actor.getNameKey()); //the Actor and its lower case name
+		}
+		return actor;
+	}
+	
+	/**
+	 * Finds or makes the canonical Actor in the shared pool for a pool of one thread.
+	 * @param name the name the other pool did not have
+	 * @return the canonical Actor with that name
+	 */
+	private synchronized Actor actorShared(String name) {
+		Actor actor = actors.get(name);
+		if (actor == null) {
+			actor = new Actor(name);
+			actors.put(name, actor);
+		}
+		return actor;
+	}
+	
+	/**
+	 * Adds the statistics of a pool of one thread to this one, once that pool is done.
+	 * @param other the other pool
+	 */
+	public synchronized void addStatistics(IngestPool other) {
+		lookups += other.lookups;
+		bytesSaved += other.bytesSaved;
+	}
+	
+	/**
+	 * Returns the number of distinct strings in the pool.
+	 * @return the number of strings
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of distinct actors in the pool.
+	 * @return the number of actors
+	 */
+	public int actorCount() {
+		return actors.size();
+	}
+	
+	/**
+	 * Returns the number of strings that were asked for, including the ones that were already in the pool.
+	 * @return the number of lookups
+	 */
+	public long lookups() {
+		return lookups;
+	}
+	
+	/**
+	 * Returns the estimated number of bytes of heap saved by the pool: the size of every copy of
+	 * a string or Actor that was not kept, because the pooled one was used instead.
+	 * @return the estimated bytes saved
+	 */
+	public long bytesSaved() {
+		return bytesSaved;
+	}
+	
+	/**
+	 * Checks if a string has exactly the specified characters.
+	 * @param s the string
+	 * @param chars the characters
+	 * @param start the first character
+	 * @param end one past the last character
+	 * @return true if they are the same
+	 */
+	private static boolean matches(String s, char[] chars, int start, int end) {
+		if (s.length() != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i - start) != chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Mixes the high bits of a hash code into the low bits, which pick the slot.
+	 * @param hash the hash code
+	 * @return the mixed hash code
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Puts a new string into an empty slot, growing the table when it is half full.
+	 * @param slot the empty slot
+	 * @param s the string
+	 */
+	private void add(int slot, String s) {
+		table[slot] = s;
+		size++;
+		if (size * 2 > table.length) {
+			String[] old = table;
+			table = new String[old.length * 2];
+			int mask = table.length - 1;
+			for (String pooled : old) {
+				if (pooled != null) {
+					int i = spread(pooled.hashCode()) & mask;
+					while (table[i] != null) {
+						i = (i + 1) & mask;
+					}
+					table[i] = pooled;
+				}
+			}
+		}
+	}
+}
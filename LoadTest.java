@@ -0,0 +1,94 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a load test for a MovieServer. It keeps a fixed number of requests in flight at once,
+ * cycling through a mix of title, actor and year searches, and reports the throughput and the
+ * percentiles of the latency.
+ *
+ * Usage: java LoadTest URL [CONCURRENCY] [REQUESTS]
+ * for example java LoadTest http://localhost:8080 1000 100000
+ * @author atara
+ */
+public class LoadTest {
+	
+	//the searches sent, in turn
+	private static final String[] PATHS = {
+		"/title?q=a", "/actor?q=an", "/title?q=vertigo", "/year?from=1950&to=2000",
+		"/actor?q=e", "/year?from=1990&to=2010&title=the", "/title?q=zzz", "/year?from=1900&to=2020&actor=williams"
+	};
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Error: the load test expects the URL of the server as an argument.\n");
+			System.exit(1);
+		}
+		String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		if (concurrency <= 0 || requests <= 0) {
+			System.err.println("Error: the concurrency and number of requests must be positive.\n");
+			System.exit(1);
+		}
+		
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+		URI[] uris = new URI[PATHS.length];
+		for (int i = 0; i < PATHS.length; i++) {
+			uris[i] = URI.create(base + PATHS[i]);
+		}
+		
+		long[] latencies = new long[requests]; //in nanoseconds, from sending to the whole response
+		AtomicInteger ok = new AtomicInteger(); //responses with status 200 or 404
+		AtomicInteger failed = new AtomicInteger(); //other statuses and errors
+		Semaphore inFlight = new Semaphore(concurrency);
+		CountDownLatch done = new CountDownLatch(requests);
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			inFlight.acquire();
+			final int id = i;
+			long sent = System.nanoTime();
+			HttpRequest request = HttpRequest.newBuilder(uris[i % uris.length]).timeout(Duration.ofSeconds(30)).GET().build();
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+				latencies[id] = System.nanoTime() - sent;
+				if (e == null && (response.statusCode() == 200 || response.statusCode() == 404)) {
+					ok.incrementAndGet();
+				}
+				else {
+					failed.incrementAndGet();
+				}
+				inFlight.release();
+				done.countDown();
+			});
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		
+		Arrays.sort(latencies);
+		System.out.printf("%d requests, %d in flight: %d ok, %d failed in %.2f s%n",
+				requests, concurrency, ok.get(), failed.get(), elapsed / 1e9);
+		System.out.printf("throughput %.0f requests/s%n", requests / (elapsed / 1e9));
+		System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+				percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+				percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6);
+	}
+	
+	/**
+	 * Returns a percentile of the sorted latencies, by the nearest rank.
+	 * @param sorted the latencies in nanoseconds, in increasing order
+	 * @param percent the percentile, from 0 to 100
+	 * @return the latency in milliseconds
+	 */
+	private static double percentile(long[] sorted, double percent) {
+		int rank = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(rank, sorted.length - 1))] / 1e6;
+	}
+}
@@ -1,4 +1,5 @@
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * This class is used to represent the locations and fun facts that may be associated with them.
@@ -77,10 +78,26 @@ public class Location {
 	 * @returns the string representation of this location object 
 	 */
 	public String toString () {
-		String result = locationName;
+		StringBuilder result = new StringBuilder();
+		try {
+			appendTo(result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //a StringBuilder never throws
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Writes the string representation of this location, the same as toString, without making the String.
+	 * @param out where to write it
+	 * @return out
+	 * @throws IOException if out cannot be written to
+	 */
+	public Appendable appendTo(Appendable out) throws IOException {
+		out.append(locationName);
 		if (funFact != null && funFact.length() > 0) {
-			result += " ("+funFact+") ";
+			out.append(" (").append(funFact).append(") ");
 		}
-		return result;
+		return out;
 	}
 }
@@ -1,11 +1,18 @@
 
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 public class Movie implements Comparable<Movie> { //implements comparable interface, has a compareTo method
 	
 	 //instance variables
 	 private String title; 
+	 private String titleKey; //the title folded to lower case, cached so that comparisons don't allocate
+	 private long sortKey; //the year and the first three characters of titleKey packed together, compared before titleKey
 	 private int year; 
 	 private String director; 
 	 private String writer; 
@@ -13,6 +20,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	 private Actor actor2; 
 	 private Actor actor3; 
 	 ArrayList<Location> sfLocations;  //a list of SF locations in which the movie was produced AND fun fact
+	 private volatile byte[] rendered; //toString in UTF-8, made the first time it is written out, and dropped by every setter and addLocation
 	 
 	 /**
 	  * Constructs a new Movie object with specified title and year values.
@@ -26,6 +34,29 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 		 sfLocations = new ArrayList<>();
 	}
 	
+	/**
+	 * Private constructor for the bounds used to search by year, which skips validation.
+	 */
+	private Movie() {
+		sfLocations = new ArrayList<>();
+	}
+	
+	/**
+	 * Returns a Movie which sorts before every movie released in the specified year, 
+	 * and after every movie released before it. It is only meant to be used as 
+	 * the end of a range of movies in a MovieList.
+	 * @param year the year
+	 * @return a Movie with an empty title, released in the specified year
+	 */
+	static Movie yearBound(int year) {
+		Movie bound = new Movie();
+		bound.title = "";
+		bound.titleKey = "";
+		bound.year = Math.max(0, Math.min(year, Short.MAX_VALUE)); //so that it still fits in sortKey
+		bound.updateSortKey();
+		return bound;
+	}
+	
 	/**
 	 * Constructs a new Movie object with the specified values.
 	 * @param title title value to be used for this Movie
@@ -56,6 +87,14 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 		return title;
 	}
 	 
+	/**
+	 * Returns the movie's title folded to lower case, as it is compared and matched against search keywords.
+	 * @return the lower case title for this Movie object
+	 */
+	String getTitleKey() {
+		return titleKey;
+	}
+	 
 	/**
 	 * Validates and sets the movie's title. Title cannot be a non-empty string.
 	 * @param title the movie's title to be examined and set
@@ -66,6 +105,9 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 			throw new IllegalArgumentException("Not a valid title.");
 		}
 		this.title = title;
+		this.titleKey = title.toLowerCase();
+		updateSortKey();
+		rendered = null;
 	}
 	
 	/**
@@ -86,6 +128,25 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 			throw new IllegalArgumentException("Not a valid year.");
 		}
 		this.year = year;
+		updateSortKey();
+		rendered = null;
+	}
+	
+	/**
+	 * Packs the year and the first three characters of the folded title into sortKey. 
+	 * Comparing the sort keys of two movies orders them the same way as comparing their years 
+	 * and then their folded titles would, as far as those first three characters go, 
+	 * so most comparisons never have to look at the titles themselves.
+	 */
+	private void updateSortKey() {
+		if (titleKey == null) {
+			return; //the title is not set yet, the key is computed once it is
+		}
+		long key = year;
+		for (int i = 0; i < 3; i++) {
+			key = (key << 16) | (i < titleKey.length() ? titleKey.charAt(i) : 0);
+		}
+		sortKey = key;
 	}
 	
 	/**
@@ -102,6 +163,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	 */
 	public void setDirector(String director) {
 		this.director = director;
+		rendered = null;
 	}
 	
 	/**
@@ -118,6 +180,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	 */
 	public void setWriter(String writer) {
 		this.writer = writer;
+		rendered = null;
 	}
 	
 	/**
@@ -139,6 +202,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 			throw new IllegalArgumentException("Not a valid actor.");
 		}
 		this.actor1 = actor1;
+		rendered = null;
 	}
 	
 	/**
@@ -158,6 +222,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	public void setActor2(Actor actor2) throws IllegalArgumentException {
 		//if NOT an Actor object or NOT equal to null
 		this.actor2 = actor2;
+		rendered = null;
 	}
 	
 	/**
@@ -175,6 +240,7 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	 */
 	public void setActor3(Actor actor3) {
 		this.actor3 = actor3;
+		rendered = null;
 	}
 	
 	/**
@@ -193,17 +259,19 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	public void addLocation(Location loc) throws IllegalArgumentException {
 		if (loc == null) throw new IllegalArgumentException("Location can't be null.");
 		sfLocations.add(loc);
+		rendered = null;
 	}
 	
 	/**
 	 * Compares which movie was released first. If the two movies were released in the same year,
-	 * then it compares the titles.
+	 * then it compares the titles, ignoring case.
+	 * Uses the cached sort keys, so no Strings are created.
 	*/
 	@Override
 	public int compareTo(Movie o) {
-		if (year != o.year)
-			return year - o.year;
-		return title.toLowerCase().compareTo(o.title.toLowerCase());
+		if (sortKey != o.sortKey)
+			return sortKey < o.sortKey ? -1 : 1;
+		return titleKey.compareTo(o.titleKey);
 	}
 	
 	/**
@@ -220,14 +288,18 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 		if (!(obj instanceof Movie))
 			return false;
 		Movie other = (Movie) obj; //cast
-		if (title == null) {
-			if (other.title != null)
-				return false;
-		} else if (!title.equalsIgnoreCase(other.title))
-			return false;
 		if (year != other.year)
 			return false;
-		return true;
+		return titleKey.equals(other.titleKey); //same folded title, so that equals agrees with compareTo
+	}
+	
+	/**
+	 * @override
+	 * Returns a hash code for this movie, based on the same year and folded title that equals uses.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * year + titleKey.hashCode();
 	}
 	
 	/**
@@ -235,21 +307,73 @@ public class Movie implements Comparable<Movie> { //implements comparable interf
 	 * @return the String representation of this Movie object
 	 */
 	public String toString() {
-		String result = title+" ("+year+") \n"+
-				"------------------------------\n"+
-				"director:\t"+director+"\n"+
-				"writer:\t"+writer+"\n"+
-				"starring:\t"+actor1;
+		StringBuilder result = new StringBuilder(256 + 64 * sfLocations.size());
+		try {
+			appendTo(result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //a StringBuilder never throws
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Returns the string representation of this Movie encoded in UTF-8, rendering it only the first time
+	 * it is asked for after a change. The bytes are shared, so the buffer is read only.
+	 * A Location that is changed after it was added to this Movie is not noticed; the locations
+	 * should only be changed through addLocation.
+	 * @return a read only buffer of toString in UTF-8
+	 */
+	public ByteBuffer renderedBytes() {
+		return ByteBuffer.wrap(rendering()).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Writes the string representation of this Movie in UTF-8, the same bytes as renderedBytes.
+	 * @param out where to write it
+	 * @throws IOException if out cannot be written to
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(rendering());
+	}
+	
+	/**
+	 * Returns the cached UTF-8 rendering, making it if a change dropped it. Two threads may both make it,
+	 * but they make the same bytes.
+	 * @return toString in UTF-8, which must not be changed
+	 */
+	private byte[] rendering() {
+		byte[] bytes = rendered;
+		if (bytes == null) {
+			bytes = toString().getBytes(StandardCharsets.UTF_8);
+			rendered = bytes;
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Writes the string representation of this Movie, the same as toString, straight to out,
+	 * so that a long list of movies can be printed without building one String for all of it.
+	 * @param out where to write it
+	 * @return out
+	 * @throws IOException if out cannot be written to
+	 */
+	public Appendable appendTo(Appendable out) throws IOException {
+		out.append(title).append(" (").append(Integer.toString(year)).append(") \n")
+				.append("------------------------------\n")
+				.append("director:\t").append(director).append('\n')
+				.append("writer:\t").append(writer).append('\n')
+				.append("starring:\t").append(String.valueOf(actor1));
 		if (actor2 != null) {
-			result += ", "+actor2;
+			out.append(", ").append(actor2.toString());
 		}
 		if (actor3 != null) {
-			result += ", "+actor3;
+			out.append(", ").append(actor3.toString());
 		}
-		result += "\nfilmed on location at:\n";
+		out.append("\nfilmed on location at:\n");
 		for (int i = 0; i < sfLocations.size(); i++) {
-			result += "\t"+sfLocations.get(i) +"\n"; 
+			out.append('\t');
+			sfLocations.get(i).appendTo(out).append('\n');
 		}
-		return result;
+		return out;
 	}
 }
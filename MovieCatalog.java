@@ -0,0 +1,56 @@
+/**
+ * This interface is the searches that can be run on a collection of movies, whichever way the movies are stored.
+ * Every search returns a MovieList of the matching movies in sorted order, or null if there are none,
+ * and matches keywords as substrings, ignoring case.
+ * @author atara
+ */
+public interface MovieCatalog {
+	
+	/**
+	 * Returns the number of movies in the catalog.
+	 * @return the number of movies
+	 */
+	int size();
+	
+	/**
+	 * Returns a list of the movies whose titles contain the specified keyword as a substring.
+	 * @param title the specified keyword to search for
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	MovieList getMatchingTitles(String title);
+	
+	/**
+	 * Returns a list of the movies with an actor whose name contains the specified keyword as a substring.
+	 * @param actor the specified keyword to search for
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	MovieList getMatchingActor(String actor);
+	
+	/**
+	 * Returns a list of the movies released from the year from to the year to, inclusive.
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	MovieList getMatchingYears(int from, int to);
+	
+	/**
+	 * Returns a list of the movies released from the year from to the year to, inclusive,
+	 * whose titles contain the specified keyword as a substring.
+	 * @param title the specified keyword to search for
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	MovieList getMatchingTitles(String title, int from, int to);
+	
+	/**
+	 * Returns a list of the movies released from the year from to the year to, inclusive,
+	 * with an actor whose name contains the specified keyword as a substring.
+	 * @param actor the specified keyword to search for
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	MovieList getMatchingActor(String actor, int from, int to);
+}
@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class stores the movies of a MovieList in columns of primitive arrays instead of one object per
+ * movie and location. Every movie has an id, its position in sorted order, and each column holds one
+ * field of every movie: the year, and the title, director and writer as ids into one shared table of
+ * distinct strings. The actors are ids into a table of distinct actors, and the locations of each movie
+ * are a range of the location columns.
+ *
+ * The folded titles and actor names are also kept one after the other in char arrays, so searches read
+ * contiguous memory instead of following references from object to object. A Movie is only made, as a
+ * view of one row, for the movies a search returns. The searches themselves are those of MovieStore.
+ * @author atara
+ */
+public class MovieColumns extends MovieStore {
+	
+	//instance variables of MovieColumns
+	private final String[] strings; //every distinct title, director, writer, location name and fun fact
+	private final int[] years; //the year of each movie, in increasing order since the ids are in sorted order
+	private final int[] titles; //the string id of the title of each movie
+	private final int[] directors; //the string id of the director of each movie, or -1
+	private final int[] writers; //the string id of the writer of each movie, or -1
+	private final int[] actors; //the actor ids of each movie, three per movie, or -1
+	private final int[] locationStarts; //the first location of each movie, and one past the last location
+	private final int[] locationNames; //the string id of the name of each location
+	private final int[] funFacts; //the string id of the fun fact of each location, or -1
+	private final char[] titleText; //the folded title of every movie, one after the other
+	private final int[] titleStarts; //where each movie's title starts in titleText, and where the last one ends
+	private final String[] actorNames; //the name of each distinct actor
+	private final char[] actorText; //the folded name of every distinct actor, one after the other
+	private final int[] actorStarts; //where each actor's name starts in actorText, and where the last one ends
+	private final int[] actorMovieStarts; //the first entry of each actor in actorMovies, and one past the last
+	private final int[] actorMovies; //the ids of the movies of each actor, in increasing order
+	
+	/**
+	 * Builds the columns from the movies of the specified list.
+	 * @param list the list of movies
+	 */
+	public MovieColumns(MovieList list) {
+		int n = list.size();
+		years = new int[n];
+		titles = new int[n];
+		directors = new int[n];
+		writers = new int[n];
+		actors = new int[3 * n];
+		locationStarts = new int[n + 1];
+		titleStarts = new int[n + 1];
+		
+		HashMap<String, Integer> stringIds = new HashMap<>();
+		HashMap<String, Integer> actorIds = new HashMap<>();
+		ArrayList<String> distinctActors = new ArrayList<>();
+		ArrayList<Integer> names = new ArrayList<>();
+		ArrayList<Integer> facts = new ArrayList<>();
+		StringBuilder folded = new StringBuilder();
+		int id = 0;
+		for (Movie m : list) {
+			years[id] = m.getYear();
+			titles[id] = stringId(stringIds, m.getTitle());
+			directors[id] = stringId(stringIds, m.getDirector());
+			writers[id] = stringId(stringIds, m.getWriter());
+			Actor[] cast = {m.getActor1(), m.getActor2(), m.getActor3()};
+			for (int k = 0; k < 3; k++) {
+				if (cast[k] == null) {
+					actors[3 * id + k] = -1;
+				}
+				else {
+					Integer actor = actorIds.get(cast[k].getName());
+					if (actor == null) {
+						actor = distinctActors.size();
+						actorIds.put(cast[k].getName(), actor);
+						distinctActors.add(cast[k].getName());
+					}
+					actors[3 * id + k] = actor;
+				}
+			}
+			locationStarts[id] = names.size();
+			for (Location loc : m.getSfLocations()) {
+				names.add(stringId(stringIds, loc.getLocationName()));
+				facts.add(stringId(stringIds, loc.getFunFact()));
+			}
+			titleStarts[id] = folded.length();
+			folded.append(m.getTitleKey());
+			id++;
+		}
+		locationStarts[n] = names.size();
+		titleStarts[n] = folded.length();
+		titleText = folded.toString().toCharArray();
+		locationNames = toArray(names);
+		funFacts = toArray(facts);
+		strings = new String[stringIds.size()];
+		stringIds.forEach((s, i) -> strings[i] = s);
+		
+		//the folded names of the distinct actors, and the movies of each one
+		actorNames = distinctActors.toArray(new String[0]);
+		actorStarts = new int[actorNames.length + 1];
+		folded.setLength(0);
+		for (int a = 0; a < actorNames.length; a++) {
+			actorStarts[a] = folded.length();
+			folded.append(actorNames[a].toLowerCase());
+		}
+		actorStarts[actorNames.length] = folded.length();
+		actorText = folded.toString().toCharArray();
+		actorMovieStarts = new int[actorNames.length + 1];
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < 3; k++) {
+				if (isNewActor(i, k)) {
+					actorMovieStarts[actors[3 * i + k] + 1]++;
+				}
+			}
+		}
+		for (int a = 0; a < actorNames.length; a++) {
+			actorMovieStarts[a + 1] += actorMovieStarts[a];
+		}
+		actorMovies = new int[actorMovieStarts[actorNames.length]];
+		int[] next = actorMovieStarts.clone();
+		for (int i = 0; i < n; i++) { //in increasing order, so each actor's movies are too
+			for (int k = 0; k < 3; k++) {
+				if (isNewActor(i, k)) {
+					actorMovies[next[actors[3 * i + k]]++] = i;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the id of a string in the table of distinct strings, adding it the first time.
+	 * @param ids the id of every string so far
+	 * @param s the string, or null
+	 * @return the id of the string, or -1 if it is null
+	 */
+	private static int stringId(HashMap<String, Integer> ids, String s) {
+		if (s == null) {
+			return -1;
+		}
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = ids.size();
+			ids.put(s, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Copies a list of ints into an array.
+	 * @param values the values
+	 * @return the values as an array
+	 */
+	private static int[] toArray(ArrayList<Integer> values) {
+		int[] result = new int[values.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.get(i);
+		}
+		return result;
+	}
+	
+	/**
+	 * Checks if the specified actor of a movie is there and was not already listed for the same movie.
+	 * @param id the id of the movie
+	 * @param k which of the three actors
+	 * @return true if the actor is there and is listed for the first time
+	 */
+	private boolean isNewActor(int id, int k) {
+		int actor = actors[3 * id + k];
+		for (int j = 0; j < k; j++) {
+			if (actors[3 * id + j] == actor) {
+				return false;
+			}
+		}
+		return actor >= 0;
+	}
+	
+	@Override
+	public int size() {
+		return years.length;
+	}
+	
+	/**
+	 * Makes a Movie, with its locations, out of the specified row of the columns.
+	 * The Movie is a copy, so changing it does not change the columns.
+	 * @param id the id of the movie
+	 * @return the movie
+	 * @throws IndexOutOfBoundsException if there is no movie with that id
+	 */
+	@Override
+	public Movie movie(int id) {
+		Movie m = new Movie(strings[titles[id]], years[id], string(directors[id]), string(writers[id]),
+				actor(actors[3 * id]), actor(actors[3 * id + 1]), actor(actors[3 * id + 2]));
+		m.sfLocations.ensureCapacity(locationStarts[id + 1] - locationStarts[id]);
+		for (int l = locationStarts[id]; l < locationStarts[id + 1]; l++) {
+			m.addLocation(new Location(strings[locationNames[l]], string(funFacts[l])));
+		}
+		return m;
+	}
+	
+	/**
+	 * Returns the string with the specified id.
+	 * @param id the id, or -1
+	 * @return the string, or null for -1
+	 */
+	private String string(int id) {
+		return id < 0 ? null : strings[id];
+	}
+	
+	/**
+	 * Makes an Actor for the specified actor id.
+	 * @param id the id, or -1
+	 * @return the actor, or null for -1
+	 */
+	private Actor actor(int id) {
+		return id < 0 ? null : new Actor(actorNames[id]);
+	}
+	
+	/**
+	 * Checks if the range [start, end) of a text contains the keyword.
+	 * @param text the text
+	 * @param start the first character of the range
+	 * @param end one past the last character of the range
+	 * @param keyword the non-empty keyword
+	 * @return true if the keyword occurs in the range
+	 */
+	private static boolean contains(char[] text, int start, int end, char[] keyword) {
+		char first = keyword[0];
+		int last = end - keyword.length;
+		for (int i = start; i <= last; i++) {
+			if (text[i] == first) {
+				int j = 1;
+				while (j < keyword.length && text[i + j] == keyword[j]) {
+					j++;
+				}
+				if (j == keyword.length) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	protected boolean titleContains(int id, char[] keyword) {
+		return contains(titleText, titleStarts[id], titleStarts[id + 1], keyword);
+	}
+	
+	/**
+	 * Checks if the name of an actor contains the keyword.
+	 * @param actor the id of the actor, or -1
+	 * @param keyword the folded, non-empty keyword
+	 * @return true if there is an actor and their name contains the keyword
+	 */
+	@Override
+	protected boolean actorContains(int actor, char[] keyword) {
+		return actor >= 0 && contains(actorText, actorStarts[actor], actorStarts[actor + 1], keyword);
+	}
+	
+	@Override
+	protected int yearOf(int id) {
+		return years[id];
+	}
+	
+	@Override
+	protected boolean castContains(int id, char[] keyword) {
+		return actorContains(actors[3 * id], keyword) || actorContains(actors[3 * id + 1], keyword)
+				|| actorContains(actors[3 * id + 2], keyword);
+	}
+	
+	@Override
+	protected int actorCount() {
+		return actorNames.length;
+	}
+	
+	@Override
+	protected void markMovies(int actor, boolean[] matched) {
+		for (int i = actorMovieStarts[actor]; i < actorMovieStarts[actor + 1]; i++) {
+			matched[actorMovies[i]] = true;
+		}
+	}
+	
+	/**
+	 * Estimates the number of bytes the columns take up on the heap.
+	 * @return the estimated size in bytes
+	 */
+	public long memoryFootprint() {
+		long size = SearchIndex.sizeOfReferences(strings.length) + SearchIndex.sizeOfReferences(actorNames.length);
+		for (String s : strings) {
+			size += SearchIndex.sizeOf(s);
+		}
+		for (String s : actorNames) {
+			size += SearchIndex.sizeOf(s);
+		}
+		for (int[] column : new int[][] {years, titles, directors, writers, actors, locationStarts, locationNames,
+				funFacts, titleStarts, actorStarts, actorMovieStarts, actorMovies}) {
+			size += SearchIndex.sizeOf(column);
+		}
+		return size + SearchIndex.sizeOf(titleText) + SearchIndex.sizeOf(actorText);
+	}
+}
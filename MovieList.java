@@ -1,11 +1,35 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 /**
  * This class inherits from BST and is used to store all the Movie objects.
+ * Searches scan every movie in the list, unless a SearchIndex has been built over the list,
+ * in which case the index answers them with the same results.
+ * A list that was loaded in bulk also keeps one Actor for each distinct name, each knowing its movies,
+ * so actor searches only scan the distinct actors.
  * @author atara
  *
  */
-public class MovieList extends BST<Movie> {
-
+public class MovieList extends BST<Movie> implements MovieCatalog {
+	
+	private static final byte[] EMPTY = "Empty list.".getBytes(StandardCharsets.UTF_8); //what an empty list is written as
+	private static final int GATHER = 512; //the most movies in one gathering write, within the limit of the operating system
+	
+	private SearchIndex index; //the index used to answer searches, or null to scan the list
+	private HashMap<String, Actor> actorsByName; //the one Actor for each distinct name, or null if not loaded in bulk
+	private Actor[] actors; //the same actors, scanned by actor searches
+	private int actorsModCount; //the modCount of the list when the actors were indexed
+	
 	/**
 	 * Constructs a new MovieList by calling the constructor of it's superclass, LinkedList
 	 */
@@ -15,16 +39,238 @@ public class MovieList extends BST<Movie> {
 	
 	/**
 	 * Adds new movie to the list. Void return.
+	 * If the movie is already in the list, only its location is added to the existing movie.
+	 * Either way the tree is only descended once.
 	 * @param m the movie to be added
 	 */
 	public void addMovie(Movie m) {
-		if (this.contains(m)) {
-			get(m).addLocation(m.getSfLocations().get(0)); //so just add the location
+		Movie existing = putIfAbsent(m);
+		if (existing != null) {
+			existing.addLocation(m.getSfLocations().get(0)); //so just add the location
+		}
+	}
+	
+	/**
+	 * Builds a list from parsed movies in one sort and one linear pass, instead of adding them one at a time.
+	 * The movies are sorted in parallel, and since the sort is stable, the locations of movies that are
+	 * equal are added to the first of them in the order the movies were given.
+	 * The actors of the movies are then indexed, so the movies should not belong to another list.
+	 * @param movies the movies, each with its own locations; the array is sorted in place
+	 * @param count the number of elements of movies to use, starting from the first
+	 * @return a MovieList of the movies
+	 * @throws IllegalArgumentException if a movie is null
+	 */
+	public static MovieList bulkLoad(Movie[] movies, int count) {
+		for (int i = 0; i < count; i++) {
+			if (movies[i] == null) {
+				throw new IllegalArgumentException("Invalid data. Null cannot be added to the list.");
+			}
+		}
+		Arrays.parallelSort(movies, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct > 0 && movies[distinct - 1].equals(movies[i])) {
+				for (Location loc : movies[i].getSfLocations()) {
+					movies[distinct - 1].addLocation(loc); //a duplicate, so just add its locations
+				}
+			}
+			else {
+				movies[distinct++] = movies[i];
+			}
+		}
+		MovieList list = new MovieList();
+		list.buildBalanced(movies, distinct);
+		list.indexActors();
+		return list;
+	}
+	
+	/**
+	 * Makes the actors of this list canonical, one Actor for each distinct name, and gives each of them 
+	 * the movies of this list it appears in. The index is used until the list is changed.
+	 * Only a list that owns its movies should do this, since the actors are shared with every list holding the same movies.
+	 */
+	void indexActors() {
+		actorsByName = new HashMap<>();
+		for (Movie m : this) { //in sorted order, so each actor's movies are sorted too
+			m.setActor1(indexActor(m.getActor1(), m));
+			m.setActor2(indexActor(m.getActor2(), m));
+			m.setActor3(indexActor(m.getActor3(), m));
+		}
+		actors = actorsByName.values().toArray(new Actor[0]);
+		for (Actor a : actors) {
+			a.trimMovies();
+		}
+		actorsModCount = modCount;
+	}
+	
+	/**
+	 * Adds a movie to the canonical actor with the same name as the specified actor.
+	 * @param actor an actor of the movie, or null
+	 * @param m the movie
+	 * @return the canonical actor, or null if actor is null
+	 */
+	private Actor indexActor(Actor actor, Movie m) {
+		if (actor == null) {
+			return null;
+		}
+		Actor canonical = actorsByName.get(actor.getName());
+		if (canonical == null) {
+			canonical = actor;
+			canonical.clearMovies(); //from any earlier index
+			actorsByName.put(canonical.getName(), canonical);
+		}
+		canonical.addMovie(m);
+		return canonical;
+	}
+	
+	/**
+	 * Checks if the actors were indexed and the list has not changed since.
+	 * @return true if actor searches should scan the distinct actors, false if they should scan the list
+	 */
+	private boolean useActors() {
+		return actors != null && actorsModCount == modCount;
+	}
+	
+	/**
+	 * Returns the actor with exactly the specified name, who knows all of their movies in this list.
+	 * @param name the actor's name
+	 * @return the actor, or null if no movie in the list has that actor, 
+	 * or the list was not loaded in bulk or has changed since
+	 */
+	public Actor getActor(String name) {
+		if (!useActors()) {
+			return null;
+		}
+		return actorsByName.get(name);
+	}
+	
+	/**
+	 * Builds a list from movies that are already in sorted order, such as the results of a scan of another list,
+	 * without comparing or rebalancing.
+	 * @param movies the movies, in increasing order without duplicates
+	 * @return a MovieList of the movies
+	 */
+	static MovieList ofSorted(ArrayList<Movie> movies) {
+		MovieList list = new MovieList();
+		list.buildBalanced(movies.toArray(new Movie[0]), movies.size());
+		return list;
+	}
+	
+	/**
+	 * Writes each movie with Movie.appendTo, so no String is made for it.
+	 * @param out where to write the movie
+	 * @param m the movie
+	 * @throws IOException if out cannot be written to
+	 */
+	@Override
+	protected void appendData(Appendable out, Movie m) throws IOException {
+		m.appendTo(out);
+	}
+	
+	/**
+	 * Writes the list, the same as toString, in UTF-8. Each movie is written from the bytes it keeps
+	 * from the last time it was written, so a movie that is often in the results is only rendered once.
+	 * @param out where to write the list
+	 * @throws IOException if out cannot be written to
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (isEmpty()) {
+			out.write(EMPTY);
 			return;
 		}
-		else {
-			add(m);
+		for (Movie m : this) {
+			m.writeTo(out);
+			out.write('\n');
+		}
+	}
+	
+	/**
+	 * Writes the list, the same as toString, in UTF-8, with gathering writes: the bytes each movie keeps
+	 * and the line breaks between them are handed to the channel as a group of buffers, up to GATHER movies
+	 * at a time, without being copied into one buffer first.
+	 * @param channel where to write the list
+	 * @return the number of bytes written
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public long writeTo(GatheringByteChannel channel) throws IOException {
+		if (isEmpty()) {
+			return write(channel, new ByteBuffer[] {ByteBuffer.wrap(EMPTY)}, 1);
+		}
+		ByteBuffer[] buffers = new ByteBuffer[2 * Math.min(size(), GATHER)];
+		ByteBuffer newline = ByteBuffer.wrap(new byte[] {'\n'}).asReadOnlyBuffer();
+		long written = 0;
+		int count = 0;
+		for (Movie m : this) {
+			buffers[count++] = m.renderedBytes();
+			buffers[count++] = newline.duplicate();
+			if (count == buffers.length) {
+				written += write(channel, buffers, count);
+				count = 0;
+			}
+		}
+		return written + write(channel, buffers, count);
+	}
+	
+	/**
+	 * Writes all of a group of buffers to a channel, which may take more than one write.
+	 * @param channel the channel
+	 * @param buffers the buffers
+	 * @param count the number of buffers to write
+	 * @return the number of bytes written
+	 * @throws IOException if the channel cannot be written to
+	 */
+	private static long write(GatheringByteChannel channel, ByteBuffer[] buffers, int count) throws IOException {
+		long written = 0;
+		int first = 0;
+		while (first < count) {
+			written += channel.write(buffers, first, count - first);
+			while (first < count && !buffers[first].hasRemaining()) {
+				first++;
+			}
+		}
+		return written;
+	}
+	
+	/**
+	 * Sets the index used to answer title and actor searches on this list.
+	 * The index is only used as long as the list is not changed after the index was built;
+	 * after that, searches go back to scanning the list.
+	 * @param index an index built over this list, or null to always scan the list
+	 * @throws IllegalArgumentException if the index was built over a different list
+	 * @throws UnsupportedOperationException if the list is read only
+	 */
+	public void setSearchIndex(SearchIndex index) {
+		checkWritable();
+		if (index != null && index.getList() != this) {
+			throw new IllegalArgumentException("The index was built over a different list.");
 		}
+		this.index = index;
+	}
+	
+	/**
+	 * Returns the index used to answer title and actor searches on this list.
+	 * @return the index for this list, or null if searches scan the list
+	 */
+	public SearchIndex getSearchIndex() {
+		return index;
+	}
+	
+	/**
+	 * Checks if there is an index which is up to date with this list to answer searches.
+	 * @return true if searches should go to the index, false if they should scan the list
+	 */
+	private boolean useIndex() {
+		return index != null && index.isCurrent();
+	}
+	
+	/**
+	 * Folds a search keyword the same way the titles and actor names are folded,
+	 * so that matching is case insensitive.
+	 * @param keyword the keyword to fold
+	 * @return the trimmed, lower case keyword
+	 */
+	static String fold(String keyword) {
+		return keyword.trim().toLowerCase();
 	}
 	
 	/**
@@ -33,45 +279,55 @@ public class MovieList extends BST<Movie> {
 	 * @return a MovieList called matchingTitles
 	 */
 	public MovieList getMatchingTitles(String title) {
-		MovieList matchingTitles = new MovieList();
 		if (title == null || title.trim().length() == 0) {
 			return null;
 		}
+		if (useIndex()) {
+			return index.getMatchingTitles(title);
+		}
+		ArrayList<Movie> matchingTitles = new ArrayList<>(); //found in list order, so already sorted
+		String keyword = fold(title);
 		for (Movie m : this) {
-			String theTitle = get(m).getTitle().trim();
-			if (theTitle.toLowerCase().contains(title.trim().toLowerCase())) {
-				matchingTitles.add(get(m));
+			if (m.getTitleKey().contains(keyword)) {
+				matchingTitles.add(m);
 			}
 		}
 		if (matchingTitles.size() == 0) {
 			return null;
 		}
-		return matchingTitles;
+		return ofSorted(matchingTitles);
 	}
-
+	
 	/**
 	 * This method should return a list of Movie object whose actors names contain the keyword as a substring.
 	 * @param actor the specified keyword to search for
-	 * @return MovieList - the type of list to be returned - called matchingActors 
-	 */	
+	 * @return MovieList - the type of list to be returned - called matchingActors
+	 */
 	public MovieList getMatchingActor(String actor) {
-		MovieList matchingActors = new MovieList();
 		if (actor == null || actor.trim().length() == 0) {
 			return null;
 		}
+		if (useIndex()) {
+			return index.getMatchingActor(actor);
+		}
+		if (useActors()) {
+			return matchingDistinctActors(fold(actor));
+		}
+		ArrayList<Movie> matchingActors = new ArrayList<>(); //found in list order, so already sorted
+		String keyword = fold(actor);
 		for (Movie m : this) {
-			if (get(m).getActor1().getName().trim().toLowerCase().contains(actor.trim().toLowerCase())) {
-				matchingActors.add(get(m));
+			if (m.getActor1().getNameKey().contains(keyword)) {
+				matchingActors.add(m);
 			}
 			else {
-				Actor actor2 = (get(m)).getActor2();
-				if (actor2 != null && actor2.getName().trim().toLowerCase().contains(actor.trim().toLowerCase())) {
-					matchingActors.add(get(m));
+				Actor actor2 = m.getActor2();
+				if (actor2 != null && actor2.getNameKey().contains(keyword)) {
+					matchingActors.add(m);
 				}
 				else {
-					Actor actor3 = (get(m)).getActor3();
-					if (actor3 != null && actor3.getName().trim().toLowerCase().contains(actor.trim().toLowerCase())) {
-						matchingActors.add(get(m));
+					Actor actor3 = m.getActor3();
+					if (actor3 != null && actor3.getNameKey().contains(keyword)) {
+						matchingActors.add(m);
 					}
 				}
 			}
@@ -79,7 +335,233 @@ public class MovieList extends BST<Movie> {
 		if (matchingActors.isEmpty()) {
 			return null;
 		}
-		return matchingActors;
+		return ofSorted(matchingActors);
+	}
+	
+	/**
+	 * Private method to search the distinct actors instead of every movie, 
+	 * and then put together the movies of the actors that match.
+	 * @param keyword the folded keyword
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	private MovieList matchingDistinctActors(String keyword) {
+		ArrayList<Movie> matchingActors = new ArrayList<>();
+		for (Actor a : actors) {
+			if (a.getNameKey().contains(keyword)) {
+				matchingActors.addAll(a.getMovies());
+			}
+		}
+		if (matchingActors.isEmpty()) {
+			return null;
+		}
+		matchingActors.sort(null); //each actor's movies are sorted, but not all of them together
+		int distinct = 0;
+		for (Movie m : matchingActors) {
+			if (distinct == 0 || matchingActors.get(distinct - 1) != m) { //a movie with more than one matching actor
+				matchingActors.set(distinct++, m);
+			}
+		}
+		matchingActors.subList(distinct, matchingActors.size()).clear();
+		return ofSorted(matchingActors);
+	}
+	
+	/**
+	 * Returns the movies released from the year from to the year to, inclusive, in sorted order.
+	 * Movies are sorted by year first, so this is a lazy range of the tree.
+	 * @param from the first year
+	 * @param to the last year
+	 * @return the movies released in the range of years, which is empty if from is after to
+	 */
+	private Iterable<Movie> years(int from, int to) {
+		if (from > to) {
+			return new MovieList();
+		}
+		int end = Math.min(to, Short.MAX_VALUE - 1) + 1; //clamped first so that it cannot overflow; no movie is that late
+		return subSet(Movie.yearBound(from), true, Movie.yearBound(end), false);
+	}
+	
+	/**
+	 * This method should return a list of the Movie objects released from the year from to the year to, inclusive.
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	public MovieList getMatchingYears(int from, int to) {
+		ArrayList<Movie> matchingYears = new ArrayList<>(); //found in list order, so already sorted
+		for (Movie m : years(from, to)) {
+			matchingYears.add(m);
+		}
+		if (matchingYears.isEmpty()) {
+			return null;
+		}
+		return ofSorted(matchingYears);
+	}
+	
+	/**
+	 * This method should return a list of the Movie objects released from the year from to the year to, inclusive,
+	 * whose titles contain the specified keyword as a substring.
+	 * Only the movies in the range of years are checked against the keyword.
+	 * @param title the specified keyword to search for
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	public MovieList getMatchingTitles(String title, int from, int to) {
+		if (title == null || title.trim().length() == 0) {
+			return null;
+		}
+		ArrayList<Movie> matchingTitles = new ArrayList<>(); //found in list order, so already sorted
+		String keyword = fold(title);
+		for (Movie m : years(from, to)) {
+			if (m.getTitleKey().contains(keyword)) {
+				matchingTitles.add(m);
+			}
+		}
+		if (matchingTitles.isEmpty()) {
+			return null;
+		}
+		return ofSorted(matchingTitles);
+	}
+	
+	/**
+	 * This method should return a list of the Movie objects released from the year from to the year to, inclusive,
+	 * with an actor whose name contains the specified keyword as a substring.
+	 * Only the movies in the range of years are checked against the keyword.
+	 * @param actor the specified keyword to search for
+	 * @param from the first year
+	 * @param to the last year
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	public MovieList getMatchingActor(String actor, int from, int to) {
+		if (actor == null || actor.trim().length() == 0) {
+			return null;
+		}
+		ArrayList<Movie> matchingActors = new ArrayList<>(); //found in list order, so already sorted
+		String keyword = fold(actor);
+		for (Movie m : years(from, to)) {
+			if (m.getActor1().getNameKey().contains(keyword)
+					|| (m.getActor2() != null && m.getActor2().getNameKey().contains(keyword))
+					|| (m.getActor3() != null && m.getActor3().getNameKey().contains(keyword))) {
+				matchingActors.add(m);
+			}
+		}
+		if (matchingActors.isEmpty()) {
+			return null;
+		}
+		return ofSorted(matchingActors);
+	}
+	
+	/**
+	 * Searches for many title keywords at once, and returns the same results as calling
+	 * getMatchingTitles(String) for each of them. All the keywords are compiled into one
+	 * Aho-Corasick automaton, and the list is read only once, whatever the number of keywords.
+	 * @param titles the keywords to search for
+	 * @return a map from each keyword to the list of movies whose titles contain it, 
+	 * or to null if there are none, in the order of the keywords
+	 */
+	public Map<String, MovieList> getMatchingTitles(Collection<String> titles) {
+		return batchSearch(titles, false);
+	}
+	
+	/**
+	 * Searches for many actor keywords at once, and returns the same results as calling
+	 * getMatchingActor(String) for each of them. All the keywords are compiled into one
+	 * Aho-Corasick automaton, and the list is read only once, whatever the number of keywords.
+	 * @param actors the keywords to search for
+	 * @return a map from each keyword to the list of movies with an actor whose name contains it, 
+	 * or to null if there are none, in the order of the keywords
+	 */
+	public Map<String, MovieList> getMatchingActor(Collection<String> actors) {
+		return batchSearch(actors, true);
+	}
+	
+	/**
+	 * Private method to search for many keywords in one pass over the list.
+	 * @param keywords the keywords to search for
+	 * @param searchActors true to search the actor names, false to search the titles
+	 * @return a map from each keyword to its results, or to null if there are none
+	 */
+	private Map<String, MovieList> batchSearch(Collection<String> keywords, boolean searchActors) {
+		//keywords which fold to the same text share one pattern
+		HashMap<String, Integer> patternIds = new HashMap<>();
+		ArrayList<String> patterns = new ArrayList<>();
+		for (String keyword : keywords) {
+			if (keyword != null && keyword.trim().length() > 0) {
+				String pattern = fold(keyword);
+				if (!patternIds.containsKey(pattern)) {
+					patternIds.put(pattern, patterns.size());
+					patterns.add(pattern);
+				}
+			}
+		}
+		
+		BatchMatches matches = new BatchMatches(patterns.size());
+		if (!patterns.isEmpty()) {
+			AhoCorasick automaton = new AhoCorasick(patterns.toArray(new String[0]));
+			for (Movie m : this) {
+				matches.movie = m;
+				if (searchActors) {
+					//each name on its own, so that no match spans two names
+					automaton.search(m.getActor1().getNameKey(), matches);
+					if (m.getActor2() != null) {
+						automaton.search(m.getActor2().getNameKey(), matches);
+					}
+					if (m.getActor3() != null) {
+						automaton.search(m.getActor3().getNameKey(), matches);
+					}
+				}
+				else {
+					automaton.search(m.getTitleKey(), matches);
+				}
+			}
+		}
+		
+		MovieList[] results = new MovieList[patterns.size()];
+		for (int p = 0; p < results.length; p++) {
+			if (!matches.found.get(p).isEmpty()) {
+				results[p] = ofSorted(matches.found.get(p));
+			}
+		}
+		LinkedHashMap<String, MovieList> answer = new LinkedHashMap<>();
+		for (String keyword : keywords) {
+			Integer p = keyword == null ? null : patternIds.get(fold(keyword));
+			answer.put(keyword, p == null ? null : results[p]);
+		}
+		return answer;
+	}
+	
+	/**
+	 * This class collects the movies matched by each pattern of a batch search,
+	 * adding each movie to a pattern's results only once however often the pattern occurs in it.
+	 */
+	private static class BatchMatches implements IntConsumer {
+		private Movie movie; //the movie being searched
+		private final Movie[] lastMovie; //the last movie added to each pattern's results
+		private final ArrayList<ArrayList<Movie>> found; //the results of each pattern, in list order
+		
+		/**
+		 * Constructs an empty collection of results.
+		 * @param patterns the number of patterns
+		 */
+		public BatchMatches(int patterns) {
+			lastMovie = new Movie[patterns];
+			found = new ArrayList<>(patterns);
+			for (int p = 0; p < patterns; p++) {
+				found.add(new ArrayList<>());
+			}
+		}
+		
+		/**
+		 * Records that the specified pattern occurs in the current movie.
+		 * @param p the number of the pattern
+		 */
+		@Override
+		public void accept(int p) {
+			if (lastMovie[p] != movie) {
+				lastMovie[p] = movie;
+				found.get(p).add(movie);
+			}
+		}
 	}
 }
 
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * This class is a small benchmark for loading and searching a MovieList.
+ * It times how long it takes to load the data set into a MovieList, and how long
+ * it takes to look up every movie in the loaded list by title and year.
+ * Each measurement is repeated several times after a warm up, and the median is reported.
+ *
+ * Usage: java MovieListBenchmark FILE [ROUNDS]
+ * @author atara
+ */
+public class MovieListBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Error: the benchmark expects a file name as an argument.\n");
+			System.exit(1);
+		}
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		//read the file once, so that the disk is not part of the measurement
+		String data = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+
+		//ingest
+		MovieList list = null;
+		long[] ingest = new long[rounds];
+		for (int i = -rounds; i < rounds; i++) { //the first half of the rounds is the warm up
+			long start = System.nanoTime();
+			list = SFMovieData.loadMovies(new StringReader(data));
+			if (i >= 0) {
+				ingest[i] = System.nanoTime() - start;
+			}
+		}
+
+		//lookups, with probes that only match the movies in the list case insensitively
+		Movie[] probes = new Movie[list.size()];
+		int n = 0;
+		for (Movie m : list) {
+			probes[n++] = new Movie(m.getTitle().toUpperCase(), m.getYear());
+		}
+		int repeat = Math.max(1, 1000000 / Math.max(1, probes.length));
+		long[] lookup = new long[rounds];
+		int found = 0;
+		for (int i = -rounds; i < rounds; i++) {
+			long start = System.nanoTime();
+			for (int r = 0; r < repeat; r++) {
+				for (Movie probe : probes) {
+					if (list.get(probe) != null) {
+						found++;
+					}
+				}
+			}
+			if (i >= 0) {
+				lookup[i] = System.nanoTime() - start;
+			}
+		}
+
+		System.out.println("movies loaded:    " + list.size() + " (" + found / (2 * rounds * repeat) + " found per pass)");
+		System.out.printf("ingest:           %.3f ms per load%n", median(ingest) / 1e6);
+		System.out.printf("lookup:           %.1f ns per get%n", median(lookup) / (double) (repeat * probes.length));
+	}
+
+	/**
+	 * Returns the median of the specified measurements.
+	 * @param times the measurements, in nanoseconds
+	 * @return the median of the measurements
+	 */
+	private static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -0,0 +1,303 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class serves searches of the movies over HTTP, using the server built into the JDK.
+ * It answers GET requests to
+ *     /title?q=KEYWORD
+ *     /actor?q=KEYWORD
+ *     /year?from=FROM&to=TO, optionally with &title=KEYWORD or &actor=KEYWORD
+ * with the matching movies as plain text, in the same format as the interactive program, or 404 if
+ * there are none. A POST to /reload loads the data set again in the background, and /stats shows the
+ * statistics of the query cache. A POST to
+ *     /movie?title=TITLE&year=YEAR&actor1=NAME, optionally with &director, &writer, &actor2, &actor3,
+ *     &location and &funFact
+ * adds one movie at once, without a reload.
+ *
+ * All requests search the same ConcurrentMovieCatalog, so they never wait for each other or for a reload.
+ * Each request is handled on a virtual thread when the JDK has them, so that a blocked client only
+ * costs a small object; on older JDKs a fixed pool of threads is used instead, and the requests beyond
+ * it wait in the server's queue.
+ * @author atara
+ */
+public class MovieServer implements Closeable {
+	
+	private static final int BACKLOG = 4096; //the connections the operating system may queue before they are accepted
+	
+	/**
+	 * This interface is one kind of search, run with the parameters of a request.
+	 */
+	private interface Search {
+		
+		/**
+		 * Runs the search.
+		 * @param params the parameters of the request
+		 * @return the matching movies, or null if there are none
+		 * @throws IllegalArgumentException if the parameters are missing or invalid
+		 */
+		MovieList run(Map<String, String> params);
+	}
+	
+	//instance variables of MovieServer
+	private final ConcurrentMovieCatalog catalog; //the movies searched
+	private final HttpServer server; //accepts the connections and parses the requests
+	private final ExecutorService executor; //runs the handlers
+	
+	/**
+	 * Creates a server for the specified catalog. It does not accept requests until it is started.
+	 * @param catalog the movies to search
+	 * @param port the port to listen on, or 0 for any free port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public MovieServer(ConcurrentMovieCatalog catalog, int port) throws IOException {
+		this.catalog = catalog;
+		server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		executor = newExecutor();
+		server.setExecutor(executor);
+		server.createContext("/title", exchange -> handle(exchange,
+				params -> catalog.getMatchingTitles(required(params, "q"))));
+		server.createContext("/actor", exchange -> handle(exchange,
+				params -> catalog.getMatchingActor(required(params, "q"))));
+		server.createContext("/year", exchange -> handle(exchange, this::searchYears));
+		server.createContext("/reload", this::reload);
+		server.createContext("/movie", this::addMovie);
+		server.createContext("/stats", this::statistics);
+	}
+	
+	/**
+	 * Returns an executor which runs every task on a new virtual thread, if the JDK has them.
+	 * It is looked up by reflection so that the program still compiles and runs on older JDKs,
+	 * which get a fixed pool of threads instead.
+	 * @return the executor
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Math.max(64, 16 * Runtime.getRuntime().availableProcessors()));
+		}
+	}
+	
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+	
+	/**
+	 * Returns the port the server listens on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * Stops the server, letting the requests being handled finish for up to a second.
+	 */
+	@Override
+	public void close() {
+		server.stop(1);
+		executor.shutdown();
+	}
+	
+	/**
+	 * Searches a range of years, optionally for a title or actor too.
+	 * @param params the parameters of the request: from, to, and at most one of title and actor
+	 * @return the matching movies, or null if there are none
+	 * @throws IllegalArgumentException if the years are missing or are not numbers
+	 */
+	private MovieList searchYears(Map<String, String> params) {
+		int from;
+		int to;
+		try {
+			from = Integer.parseInt(required(params, "from"));
+			to = Integer.parseInt(required(params, "to"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The years must be numbers.");
+		}
+		if (params.containsKey("title")) {
+			return catalog.getMatchingTitles(params.get("title"), from, to);
+		}
+		if (params.containsKey("actor")) {
+			return catalog.getMatchingActor(params.get("actor"), from, to);
+		}
+		return catalog.getMatchingYears(from, to);
+	}
+	
+	/**
+	 * Answers one search request.
+	 * @param exchange the request and its response
+	 * @param search the search to run
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handle(HttpExchange exchange, Search search) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				send(exchange, 405, "Only GET is supported.\n");
+				return;
+			}
+			MovieList result;
+			try {
+				result = search.run(parseQuery(exchange.getRequestURI().getRawQuery()));
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, e.getMessage() + "\n");
+				return;
+			}
+			if (result == null) {
+				send(exchange, 404, "No matches found.\n");
+			}
+			else { //streamed in chunks from the bytes each movie keeps, without building the whole text first
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, 0);
+				try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 1 << 16)) {
+					result.writeTo(out);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Answers a request to load the data set again.
+	 * @param exchange the request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void reload(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				send(exchange, 405, "Only POST is supported.\n");
+				return;
+			}
+			catalog.reloadInBackground();
+			send(exchange, 202, "Reloading the data set in the background.\n");
+		}
+	}
+	
+	/**
+	 * Answers a request to add one movie, with 201 if it was added, 409 if there already is a movie with
+	 * the same title and year, or 400 if the movie is not valid.
+	 * @param exchange the request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void addMovie(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				send(exchange, 405, "Only POST is supported.\n");
+				return;
+			}
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			Movie movie;
+			try {
+				int year;
+				try {
+					year = Integer.parseInt(required(params, "year"));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("The year must be a number.");
+				}
+				//a missing director, writer or fun fact is empty, as an empty field of the data set is
+				movie = new Movie(required(params, "title"), year, params.getOrDefault("director", ""), params.getOrDefault("writer", ""),
+						new Actor(required(params, "actor1")), actor(params, "actor2"), actor(params, "actor3"));
+				if (params.containsKey("location")) {
+					movie.addLocation(new Location(params.get("location"), params.getOrDefault("funFact", "")));
+				}
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, e.getMessage().trim() + "\n");
+				return;
+			}
+			if (catalog.addMovie(movie)) {
+				send(exchange, 201, "Added " + movie.getTitle() + " (" + movie.getYear() + ").\n");
+			}
+			else {
+				send(exchange, 409, "There already is a movie with this title and year.\n");
+			}
+		}
+	}
+	
+	/**
+	 * Returns an optional actor of a movie to add.
+	 * @param params the parameters of the request
+	 * @param name the name of the parameter
+	 * @return the actor, or null if the parameter is not given
+	 */
+	private static Actor actor(Map<String, String> params, String name) {
+		String value = params.get(name);
+		return value == null ? null : new Actor(value);
+	}
+	
+	/**
+	 * Answers a request for the statistics of the query cache of the current snapshot.
+	 * @param exchange the request and its response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void statistics(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			QueryCache cache = catalog.current().getCache();
+			send(exchange, 200, (cache == null ? "The searches are not cached." : "Query cache: " + cache + ".") + "\n");
+		}
+	}
+	
+	/**
+	 * Sends a plain text response.
+	 * @param exchange the request and its response
+	 * @param status the HTTP status code
+	 * @param body the text of the response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+	
+	/**
+	 * Splits the query of a URI into its parameters. A parameter given more than once keeps its first value.
+	 * @param rawQuery the query, still URL encoded, or null
+	 * @return the decoded parameters
+	 */
+	static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> params = new HashMap<>();
+		if (rawQuery == null) {
+			return params;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals == -1 ? pair : pair.substring(0, equals);
+			String value = equals == -1 ? "" : pair.substring(equals + 1);
+			params.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+	
+	/**
+	 * Returns a parameter which must be given.
+	 * @param params the parameters of the request
+	 * @param name the name of the parameter
+	 * @return the value of the parameter
+	 * @throws IllegalArgumentException if it is not given
+	 */
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("The parameter " + name + " is missing.");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,233 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This class saves a loaded MovieList to a compact binary file, and loads it back much faster than
+ * the CSV file can be parsed. The snapshot remembers the length and modification time of the CSV file
+ * it was made from, so a snapshot of an older version of the data set is never used.
+ *
+ * The file starts with a header: a magic number, the format version, the length and modification time
+ * of the source file, and the length and CRC32 checksum of the rest of the file. The rest is a table of
+ * every distinct string, each stored once in UTF-8, followed by the movies in sorted order, where every
+ * string is the index of an entry in the table. Since the movies are already sorted, the list is built
+ * directly with BST.buildBalanced, without parsing, sorting or merging.
+ * @author atara
+ */
+public class MovieSnapshot {
+	
+	private static final int MAGIC = 0x53464D53; //"SFMS"
+	private static final int VERSION = 1; //changed whenever the layout changes
+	private static final int HEADER_SIZE = 40; //magic, version, source length and time, payload length, checksum
+	private static final int NONE = -1; //the string index stored for a null string
+	
+	/**
+	 * Writes a snapshot of the specified list. The snapshot is written to a temporary file first
+	 * and then moved into place, so a reader never sees a partly written snapshot.
+	 * The snapshot is stamped with the length and time of the CSV file as they were before it was read,
+	 * so that if the file changed while it was being loaded, the snapshot is already stale.
+	 * @param list the list to save
+	 * @param snapshot the file to write the snapshot to
+	 * @param sourceLength the length of the CSV file the list was loaded from, taken before it was read
+	 * @param sourceModified the time the CSV file was last modified, taken before it was read
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static void write(MovieList list, File snapshot, long sourceLength, long sourceModified) throws IOException {
+		//every distinct string gets one entry in the table
+		HashMap<String, Integer> ids = new HashMap<>();
+		for (Movie m : list) {
+			intern(ids, m.getTitle());
+			intern(ids, m.getDirector());
+			intern(ids, m.getWriter());
+			intern(ids, m.getActor1().getName());
+			intern(ids, m.getActor2() == null ? null : m.getActor2().getName());
+			intern(ids, m.getActor3() == null ? null : m.getActor3().getName());
+			for (Location loc : m.getSfLocations()) {
+				intern(ids, loc.getLocationName());
+				intern(ids, loc.getFunFact());
+			}
+		}
+		String[] strings = new String[ids.size()];
+		ids.forEach((s, id) -> strings[id] = s);
+		
+		File temp = new File(snapshot.getAbsoluteFile().getParentFile(), snapshot.getName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			channel.position(HEADER_SIZE); //the header is written last, when the checksum is known
+			CRC32 crc = new CRC32();
+			CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc);
+			DataOutputStream out = new DataOutputStream(checked);
+			out.writeInt(strings.length);
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(list.size());
+			for (Movie m : list) {
+				out.writeInt(ids.get(m.getTitle()));
+				out.writeInt(m.getYear());
+				out.writeInt(id(ids, m.getDirector()));
+				out.writeInt(id(ids, m.getWriter()));
+				out.writeInt(ids.get(m.getActor1().getName()));
+				out.writeInt(id(ids, m.getActor2() == null ? null : m.getActor2().getName()));
+				out.writeInt(id(ids, m.getActor3() == null ? null : m.getActor3().getName()));
+				out.writeInt(m.getSfLocations().size());
+				for (Location loc : m.getSfLocations()) {
+					out.writeInt(ids.get(loc.getLocationName()));
+					out.writeInt(id(ids, loc.getFunFact()));
+				}
+			}
+			out.flush();
+			long payload = channel.position() - HEADER_SIZE;
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putLong(sourceLength).putLong(sourceModified);
+			header.putLong(payload).putLong(crc.getValue());
+			header.flip();
+			channel.write(header, 0);
+			channel.force(true);
+		}
+		Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Adds a string to the table if it is not there yet.
+	 * @param ids the index of every string in the table so far
+	 * @param s the string, or null
+	 */
+	private static void intern(HashMap<String, Integer> ids, String s) {
+		if (s != null && !ids.containsKey(s)) {
+			ids.put(s, ids.size());
+		}
+	}
+	
+	/**
+	 * Returns the index of a string in the table.
+	 * @param ids the index of every string in the table
+	 * @param s the string, or null
+	 * @return the index of the string, or NONE if it is null
+	 */
+	private static int id(HashMap<String, Integer> ids, String s) {
+		return s == null ? NONE : ids.get(s);
+	}
+	
+	/**
+	 * Loads the list saved in a snapshot, if the snapshot is still up to date with its source file.
+	 * @param snapshot the snapshot file
+	 * @param source the CSV file the list should be loaded from
+	 * @return the list, or null if there is no snapshot, or it is stale, of another version or damaged,
+	 * in which case the source file should be loaded instead
+	 * @throws IOException if the snapshot exists but cannot be read
+	 */
+	public static MovieList read(File snapshot, File source) throws IOException {
+		if (!snapshot.isFile() || snapshot.length() < HEADER_SIZE) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() - HEADER_SIZE > Integer.MAX_VALUE) {
+				return null; //no snapshot this large is ever written
+			}
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (bytes.getInt() != MAGIC || bytes.getInt() != VERSION
+					|| bytes.getLong() != source.length() || bytes.getLong() != source.lastModified()) {
+				return null;
+			}
+			long payload = bytes.getLong();
+			long checksum = bytes.getLong();
+			if (payload != bytes.remaining()) {
+				return null;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(bytes.duplicate());
+			if (crc.getValue() != checksum) {
+				return null;
+			}
+			try {
+				return readPayload(bytes);
+			} catch (RuntimeException e) {
+				return null; //the checksum matched, so this would be a bug in the writer; the CSV file still works
+			}
+		}
+	}
+	
+	/**
+	 * Builds the list from the string table and movie records.
+	 * @param bytes the snapshot, positioned at the start of the string table
+	 * @return the list
+	 */
+	private static MovieList readPayload(ByteBuffer bytes) {
+		String[] strings = new String[bytes.getInt()];
+		byte[] buffer = new byte[256];
+		for (int i = 0; i < strings.length; i++) {
+			int length = bytes.getInt();
+			if (length > buffer.length) {
+				buffer = new byte[Math.max(length, buffer.length * 2)];
+			}
+			bytes.get(buffer, 0, length);
+			strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+		}
+		
+		Actor[] actors = new Actor[strings.length]; //one Actor per name, shared by all its movies
+		Movie[] movies = new Movie[bytes.getInt()];
+		for (int i = 0; i < movies.length; i++) {
+			String title = strings[bytes.getInt()];
+			int year = bytes.getInt();
+			String director = string(strings, bytes.getInt());
+			String writer = string(strings, bytes.getInt());
+			Actor a1 = actor(actors, strings, bytes.getInt());
+			Actor a2 = actor(actors, strings, bytes.getInt());
+			Actor a3 = actor(actors, strings, bytes.getInt());
+			movies[i] = new Movie(title, year, director, writer, a1, a2, a3);
+			int locations = bytes.getInt();
+			movies[i].sfLocations.ensureCapacity(locations);
+			for (int j = 0; j < locations; j++) {
+				movies[i].addLocation(new Location(strings[bytes.getInt()], string(strings, bytes.getInt())));
+			}
+		}
+		MovieList list = new MovieList();
+		list.buildBalanced(movies, movies.length); //saved in sorted order
+		list.indexActors();
+		return list;
+	}
+	
+	/**
+	 * Returns the string at the specified index of the table.
+	 * @param strings the table
+	 * @param id the index, or NONE
+	 * @return the string, or null for NONE
+	 */
+	private static String string(String[] strings, int id) {
+		return id == NONE ? null : strings[id];
+	}
+	
+	/**
+	 * Returns the Actor for the name at the specified index of the table, making it the first time.
+	 * @param actors the Actor made for each index so far
+	 * @param strings the table
+	 * @param id the index of the name, or NONE
+	 * @return the actor, or null for NONE
+	 */
+	private static Actor actor(Actor[] actors, String[] strings, int id) {
+		if (id == NONE) {
+			return null;
+		}
+		if (actors[id] == null) {
+			actors[id] = new Actor(strings[id]);
+		}
+		return actors[id];
+	}
+}
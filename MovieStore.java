@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+
+/**
+ * This class runs the searches of a MovieCatalog over movies which are not kept in a tree, but are numbered
+ * from 0 in sorted order, such as the rows of MovieColumns or the records of OffHeapMovieList.
+ *
+ * Movies are sorted by year first, so the movies of a range of years are a range of ids, found by binary search.
+ * An actor search scans the distinct actors rather than the movies, and marks the movies of the ones that match.
+ * A store only says how to read the year, folded title and actors of a movie by its id, and how to make a Movie
+ * for the ids a search returns.
+ * @author atara
+ */
+public abstract class MovieStore implements MovieCatalog {
+	
+	/**
+	 * Makes a Movie, with its locations, out of the stored movie with the specified id.
+	 * @param id the position of the movie in sorted order
+	 * @return the movie
+	 * @throws IndexOutOfBoundsException if there is no movie with that id
+	 */
+	public abstract Movie movie(int id);
+	
+	/**
+	 * Returns the release year of a movie.
+	 * @param id the id of the movie
+	 * @return the year
+	 */
+	protected abstract int yearOf(int id);
+	
+	/**
+	 * Checks if the folded title of a movie contains the keyword.
+	 * @param id the id of the movie
+	 * @param keyword the folded, non-empty keyword
+	 * @return true if the title contains the keyword
+	 */
+	protected abstract boolean titleContains(int id, char[] keyword);
+	
+	/**
+	 * Checks if a movie has an actor whose folded name contains the keyword.
+	 * @param id the id of the movie
+	 * @param keyword the folded, non-empty keyword
+	 * @return true if one of the actors matches
+	 */
+	protected abstract boolean castContains(int id, char[] keyword);
+	
+	/**
+	 * Returns the number of distinct actors.
+	 * @return the number of actors
+	 */
+	protected abstract int actorCount();
+	
+	/**
+	 * Checks if the folded name of a distinct actor contains the keyword.
+	 * @param actor the id of the actor
+	 * @param keyword the folded, non-empty keyword
+	 * @return true if the name contains the keyword
+	 */
+	protected abstract boolean actorContains(int actor, char[] keyword);
+	
+	/**
+	 * Marks the movies of a distinct actor.
+	 * @param actor the id of the actor
+	 * @param matched one flag per movie, which is set for each movie of the actor
+	 */
+	protected abstract void markMovies(int actor, boolean[] matched);
+	
+	/**
+	 * Finds the first movie released in or after the specified year.
+	 * @param year the year
+	 * @return the id of the movie, or the number of movies if there is none
+	 */
+	private int firstInYear(int year) {
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (yearOf(middle) < year) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Finds the first movie released after the specified year.
+	 * @param year the year
+	 * @return the id of the movie, or the number of movies if there is none
+	 */
+	private int afterYear(int year) {
+		return year == Integer.MAX_VALUE ? size() : firstInYear(year + 1);
+	}
+	
+	/**
+	 * Makes the result list for the movies with the specified ids.
+	 * @param ids the ids of the movies, in increasing order
+	 * @return a MovieList of the movies, or null if there are none
+	 */
+	private MovieList toMovieList(ArrayList<Integer> ids) {
+		if (ids.isEmpty()) {
+			return null;
+		}
+		ArrayList<Movie> found = new ArrayList<>(ids.size());
+		for (int id : ids) {
+			found.add(movie(id));
+		}
+		return MovieList.ofSorted(found);
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title) {
+		return getMatchingTitles(title, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title, int from, int to) {
+		if (title == null || title.trim().length() == 0 || from > to) {
+			return null;
+		}
+		char[] keyword = MovieList.fold(title).toCharArray();
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int id = firstInYear(from), end = afterYear(to); id < end; id++) {
+			if (titleContains(id, keyword)) {
+				ids.add(id);
+			}
+		}
+		return toMovieList(ids);
+	}
+	
+	/**
+	 * Returns a list of the movies with an actor whose name contains the specified keyword as a substring.
+	 * Only the distinct actors are scanned, and then the movies of the ones that match are marked.
+	 * @param actor the specified keyword to search for
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	@Override
+	public MovieList getMatchingActor(String actor) {
+		if (actor == null || actor.trim().length() == 0) {
+			return null;
+		}
+		char[] keyword = MovieList.fold(actor).toCharArray();
+		boolean[] matched = new boolean[size()];
+		for (int a = 0, count = actorCount(); a < count; a++) {
+			if (actorContains(a, keyword)) {
+				markMovies(a, matched);
+			}
+		}
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int id = 0; id < matched.length; id++) {
+			if (matched[id]) {
+				ids.add(id);
+			}
+		}
+		return toMovieList(ids);
+	}
+	
+	@Override
+	public MovieList getMatchingActor(String actor, int from, int to) {
+		if (actor == null || actor.trim().length() == 0 || from > to) {
+			return null;
+		}
+		char[] keyword = MovieList.fold(actor).toCharArray();
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int id = firstInYear(from), end = afterYear(to); id < end; id++) {
+			if (castContains(id, keyword)) {
+				ids.add(id);
+			}
+		}
+		return toMovieList(ids);
+	}
+	
+	@Override
+	public MovieList getMatchingYears(int from, int to) {
+		if (from > to) {
+			return null;
+		}
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int id = firstInYear(from), end = afterYear(to); id < end; id++) {
+			ids.add(id);
+		}
+		return toMovieList(ids);
+	}
+}
@@ -0,0 +1,448 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class stores the movies of a MovieList outside of the Java heap, in direct ByteBuffers, so that
+ * neither the heap nor the work of the garbage collector grows with the number of movies.
+ *
+ * Every movie is a fixed size record in a table ordered like the list, so the table is itself the search
+ * tree: the record for the movie at position i is found by arithmetic, and years are found by binary search.
+ * Distinct actors have a table of their own, and all the strings, the lists of locations and the lists of
+ * each actor's movies are in a third arena. Nothing on the heap refers to a movie; searches read the
+ * records in place through a reusable Row, and a Movie is only made for each movie a search returns.
+ * The searches themselves are those of MovieStore.
+ * The memory is released when the list is garbage collected.
+ * @author atara
+ */
+public class OffHeapMovieList extends MovieStore {
+	
+	//the layout of a movie record
+	private static final int MOVIE_SIZE = 64; //the size of a movie record, which divides the segment size
+	private static final int YEAR = 0; //int: the release year
+	private static final int LOCATION_COUNT = 4; //int: the number of locations
+	private static final int TITLE = 8; //long: the address of the title
+	private static final int TITLE_KEY = 16; //long: the address of the folded title
+	private static final int DIRECTOR = 24; //long: the address of the director, or -1
+	private static final int WRITER = 32; //long: the address of the writer, or -1
+	private static final int ACTORS = 40; //three ints: the ids of the actors, or -1
+	private static final int LOCATIONS = 56; //long: the address of the locations, a pair of addresses for each one
+	
+	//the layout of an actor record
+	private static final int ACTOR_SIZE = 32; //the size of an actor record, which divides the segment size
+	private static final int NAME = 0; //long: the address of the name
+	private static final int NAME_KEY = 8; //long: the address of the folded name
+	private static final int MOVIE_COUNT = 16; //int: the number of movies
+	private static final int MOVIES = 24; //long: the address of the ids of the movies, in increasing order
+	
+	//instance variables of OffHeapMovieList
+	private final Arena movies; //the movie records
+	private final Arena actors; //the actor records
+	private final Arena data; //the strings and the lists of locations and movie ids
+	private final int size; //the number of movies
+	private final int actorCount; //the number of distinct actors
+	
+	/**
+	 * Copies the movies of the specified list off the heap.
+	 * @param list the list of movies
+	 */
+	public OffHeapMovieList(MovieList list) {
+		size = list.size();
+		movies = new Arena();
+		actors = new Arena();
+		data = new Arena();
+		HashMap<String, Long> strings = new HashMap<>(); //the address of every string stored so far
+		HashMap<String, Long> keys = new HashMap<>(); //the address of every folded string stored so far
+		HashMap<String, Integer> actorIds = new HashMap<>();
+		ArrayList<String> actorNames = new ArrayList<>();
+		ArrayList<ArrayList<Integer>> actorMovies = new ArrayList<>();
+		
+		int id = 0;
+		for (Movie m : list) {
+			long record = movies.allocate(MOVIE_SIZE);
+			movies.putInt(record + YEAR, m.getYear());
+			movies.putInt(record + LOCATION_COUNT, m.getSfLocations().size());
+			movies.putLong(record + TITLE, text(strings, m.getTitle()));
+			movies.putLong(record + TITLE_KEY, key(keys, m.getTitleKey()));
+			movies.putLong(record + DIRECTOR, text(strings, m.getDirector()));
+			movies.putLong(record + WRITER, text(strings, m.getWriter()));
+			Actor[] cast = {m.getActor1(), m.getActor2(), m.getActor3()};
+			for (int k = 0; k < 3; k++) {
+				int actor = -1;
+				if (cast[k] != null) {
+					Integer known = actorIds.get(cast[k].getName());
+					if (known == null) {
+						known = actorNames.size();
+						actorIds.put(cast[k].getName(), known);
+						actorNames.add(cast[k].getName());
+						actorMovies.add(new ArrayList<>());
+					}
+					actor = known;
+					ArrayList<Integer> ids = actorMovies.get(actor);
+					if (ids.isEmpty() || ids.get(ids.size() - 1) != id) { //the same actor listed twice for one movie
+						ids.add(id);
+					}
+				}
+				movies.putInt(record + ACTORS + 4 * k, actor);
+			}
+			long locations = data.allocate(16 * m.getSfLocations().size());
+			movies.putLong(record + LOCATIONS, locations);
+			for (Location loc : m.getSfLocations()) {
+				data.putLong(locations, text(strings, loc.getLocationName()));
+				data.putLong(locations + 8, text(strings, loc.getFunFact()));
+				locations += 16;
+			}
+			id++;
+		}
+		
+		actorCount = actorNames.size();
+		for (int a = 0; a < actorCount; a++) {
+			long record = actors.allocate(ACTOR_SIZE);
+			actors.putLong(record + NAME, text(strings, actorNames.get(a)));
+			actors.putLong(record + NAME_KEY, key(keys, actorNames.get(a).toLowerCase()));
+			ArrayList<Integer> ids = actorMovies.get(a);
+			long address = data.allocate(4 * ids.size());
+			actors.putInt(record + MOVIE_COUNT, ids.size());
+			actors.putLong(record + MOVIES, address);
+			for (int movie : ids) {
+				data.putInt(address, movie);
+				address += 4;
+			}
+		}
+	}
+	
+	/**
+	 * Stores a string as its length and UTF-8 bytes, unless the same string is already stored.
+	 * @param addresses the address of every string stored so far
+	 * @param s the string, or null
+	 * @return the address of the string, or -1 if it is null
+	 */
+	private long text(HashMap<String, Long> addresses, String s) {
+		if (s == null) {
+			return -1;
+		}
+		Long address = addresses.get(s);
+		if (address == null) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			address = data.allocate(4 + bytes.length);
+			data.putInt(address, bytes.length);
+			data.put(address + 4, bytes);
+			addresses.put(s, address);
+		}
+		return address;
+	}
+	
+	/**
+	 * Stores a folded string as its length and UTF-16 chars, so that it can be searched without decoding,
+	 * unless the same string is already stored.
+	 * @param addresses the address of every folded string stored so far
+	 * @param s the folded string
+	 * @return the address of the string
+	 */
+	private long key(HashMap<String, Long> addresses, String s) {
+		Long address = addresses.get(s);
+		if (address == null) {
+			address = data.allocate(4 + 2 * s.length());
+			data.putInt(address, s.length());
+			for (int i = 0; i < s.length(); i++) {
+				data.putChar(address + 4 + 2 * i, s.charAt(i));
+			}
+			addresses.put(s, address);
+		}
+		return address;
+	}
+	
+	/**
+	 * Reads a string stored by text.
+	 * @param address the address of the string, or -1
+	 * @return the string, or null for -1
+	 */
+	private String readText(long address) {
+		if (address < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[data.getInt(address)];
+		data.get(address + 4, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Checks if a folded string stored by key contains the keyword.
+	 * @param address the address of the folded string
+	 * @param keyword the folded, non-empty keyword
+	 * @return true if the keyword occurs in the string
+	 */
+	private boolean keyContains(long address, char[] keyword) {
+		ByteBuffer segment = data.segment(address);
+		int start = data.offset(address);
+		int length = segment.getInt(start);
+		start += 4;
+		char first = keyword[0];
+		for (int i = 0; i + keyword.length <= length; i++) {
+			if (segment.getChar(start + 2 * i) == first) {
+				int j = 1;
+				while (j < keyword.length && segment.getChar(start + 2 * (i + j)) == keyword[j]) {
+					j++;
+				}
+				if (j == keyword.length) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of bytes of memory this list uses outside of the heap.
+	 * @return the number of bytes allocated
+	 */
+	public long offHeapBytes() {
+		return movies.allocated() + actors.allocated() + data.allocated();
+	}
+	
+	/**
+	 * Returns a flyweight which reads the movie records in place. It can be moved from movie to movie
+	 * without making any objects, but a Row should only be used by one thread at a time.
+	 * @return a new row, on the first movie
+	 */
+	public Row row() {
+		return new Row();
+	}
+	
+	/**
+	 * Makes a Movie, with its locations, out of the specified record.
+	 * The Movie is a copy, so changing it does not change the record.
+	 * @param id the position of the movie in sorted order
+	 * @return the movie
+	 * @throws IndexOutOfBoundsException if there is no movie at that position
+	 */
+	@Override
+	public Movie movie(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Movie " + id + " of " + size);
+		}
+		long record = (long) id * MOVIE_SIZE;
+		Actor[] cast = new Actor[3];
+		for (int k = 0; k < 3; k++) {
+			int actor = movies.getInt(record + ACTORS + 4 * k);
+			if (actor >= 0) {
+				cast[k] = new Actor(readText(actors.getLong((long) actor * ACTOR_SIZE + NAME)));
+			}
+		}
+		Movie m = new Movie(readText(movies.getLong(record + TITLE)), movies.getInt(record + YEAR),
+				readText(movies.getLong(record + DIRECTOR)), readText(movies.getLong(record + WRITER)),
+				cast[0], cast[1], cast[2]);
+		int count = movies.getInt(record + LOCATION_COUNT);
+		long locations = movies.getLong(record + LOCATIONS);
+		m.sfLocations.ensureCapacity(count);
+		for (int l = 0; l < count; l++) {
+			m.addLocation(new Location(readText(data.getLong(locations)), readText(data.getLong(locations + 8))));
+			locations += 16;
+		}
+		return m;
+	}
+	
+	@Override
+	protected int yearOf(int id) {
+		return movies.getInt((long) id * MOVIE_SIZE + YEAR);
+	}
+	
+	@Override
+	protected boolean titleContains(int id, char[] keyword) {
+		return keyContains(movies.getLong((long) id * MOVIE_SIZE + TITLE_KEY), keyword);
+	}
+	
+	@Override
+	protected boolean castContains(int id, char[] keyword) {
+		for (int k = 0; k < 3; k++) {
+			int actor = movies.getInt((long) id * MOVIE_SIZE + ACTORS + 4 * k);
+			if (actor >= 0 && actorContains(actor, keyword)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	protected int actorCount() {
+		return actorCount;
+	}
+	
+	@Override
+	protected boolean actorContains(int actor, char[] keyword) {
+		return keyContains(actors.getLong((long) actor * ACTOR_SIZE + NAME_KEY), keyword);
+	}
+	
+	@Override
+	protected void markMovies(int actor, boolean[] matched) {
+		long record = (long) actor * ACTOR_SIZE;
+		long address = actors.getLong(record + MOVIES);
+		for (int i = actors.getInt(record + MOVIE_COUNT); i > 0; i--) {
+			matched[data.getInt(address)] = true;
+			address += 4;
+		}
+	}
+	
+	/**
+	 * This class is a flyweight over the movie records: one object that reads whichever record it is moved to.
+	 */
+	public class Row {
+		private int id; //the position of the movie the row is on
+		
+		/**
+		 * Moves the row to the movie at the specified position.
+		 * @param id the position of the movie in sorted order
+		 * @return this row
+		 * @throws IndexOutOfBoundsException if there is no movie at that position
+		 */
+		public Row moveTo(int id) {
+			if (id < 0 || id >= size) {
+				throw new IndexOutOfBoundsException("Movie " + id + " of " + size);
+			}
+			this.id = id;
+			return this;
+		}
+		
+		/**
+		 * Returns the release year of the movie the row is on.
+		 * @return the year
+		 */
+		public int getYear() {
+			return movies.getInt((long) id * MOVIE_SIZE + YEAR);
+		}
+		
+		/**
+		 * Returns the title of the movie the row is on.
+		 * @return the title
+		 */
+		public String getTitle() {
+			return readText(movies.getLong((long) id * MOVIE_SIZE + TITLE));
+		}
+		
+		/**
+		 * Returns the number of locations of the movie the row is on.
+		 * @return the number of locations
+		 */
+		public int getLocationCount() {
+			return movies.getInt((long) id * MOVIE_SIZE + LOCATION_COUNT);
+		}
+		
+		/**
+		 * Checks if the title of the movie the row is on contains the keyword, without making a String.
+		 * @param keyword the keyword, which is folded first
+		 * @return true if the title contains the keyword
+		 */
+		public boolean titleContains(String keyword) {
+			String folded = MovieList.fold(keyword);
+			return folded.length() == 0 || keyContains(movies.getLong((long) id * MOVIE_SIZE + TITLE_KEY), folded.toCharArray());
+		}
+	}
+	
+	/**
+	 * This class is memory outside of the heap, made of direct buffers of a fixed size, and addressed by a long.
+	 * Nothing allocated in it crosses from one buffer to the next.
+	 */
+	private static class Arena {
+		private static final int SEGMENT_BITS = 26; //64 MB per buffer
+		private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+		
+		private final ArrayList<ByteBuffer> segments = new ArrayList<>(); //the buffers
+		private long top; //the address of the next free byte
+		
+		/**
+		 * Allocates memory for a new item.
+		 * @param bytes the size of the item
+		 * @return the address of the item
+		 * @throws IllegalArgumentException if the item is larger than one buffer
+		 */
+		public long allocate(int bytes) {
+			if (bytes > SEGMENT_SIZE) {
+				throw new IllegalArgumentException("An item of " + bytes + " bytes does not fit in the arena.");
+			}
+			if (bytes == 0) {
+				return top; //nothing is ever read there
+			}
+			if (offset(top) + bytes > SEGMENT_SIZE) {
+				top = (long) segments.size() << SEGMENT_BITS; //start the next buffer
+			}
+			long address = top;
+			top += bytes;
+			int last = (int) ((top - 1) >>> SEGMENT_BITS);
+			if (last == segments.size()) {
+				segments.add(ByteBuffer.allocateDirect(last == 0 ? Math.max(bytes, 4096) : SEGMENT_SIZE));
+			}
+			ByteBuffer first = segments.get(0);
+			if (last == 0 && first.capacity() < top) { //the first buffer grows, so that a small arena stays small
+				ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(SEGMENT_SIZE, Math.max(top, 2L * first.capacity())));
+				grown.put(first.duplicate().clear());
+				segments.set(0, grown);
+			}
+			return address;
+		}
+		
+		/**
+		 * Returns the number of bytes allocated so far.
+		 * @return the number of bytes
+		 */
+		public long allocated() {
+			long total = 0;
+			for (ByteBuffer segment : segments) {
+				total += segment.capacity();
+			}
+			return total;
+		}
+		
+		/**
+		 * Returns the buffer which holds the specified address.
+		 * @param address the address
+		 * @return the buffer
+		 */
+		public ByteBuffer segment(long address) {
+			return segments.get((int) (address >>> SEGMENT_BITS));
+		}
+		
+		/**
+		 * Returns the position of the specified address in its buffer.
+		 * @param address the address
+		 * @return the position in the buffer
+		 */
+		public int offset(long address) {
+			return (int) (address & (SEGMENT_SIZE - 1));
+		}
+		
+		//reading and writing the value at an address
+		public int getInt(long address) {
+			return segment(address).getInt(offset(address));
+		}
+		
+		public long getLong(long address) {
+			return segment(address).getLong(offset(address));
+		}
+		
+		public void get(long address, byte[] bytes) {
+			segment(address).get(offset(address), bytes);
+		}
+		
+		public void putInt(long address, int value) {
+			segment(address).putInt(offset(address), value);
+		}
+		
+		public void putLong(long address, long value) {
+			segment(address).putLong(offset(address), value);
+		}
+		
+		public void putChar(long address, char value) {
+			segment(address).putChar(offset(address), value);
+		}
+		
+		public void put(long address, byte[] bytes) {
+			segment(address).put(offset(address), bytes);
+		}
+	}
+}
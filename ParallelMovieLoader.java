@@ -0,0 +1,265 @@
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class loads the data set on many threads at once. The file is memory mapped and cut into chunks,
+ * and each chunk is parsed on a fork-join pool. The movies of all the chunks are then put together in file
+ * order and bulk loaded, so the result is the same as SFMovieData.loadMovies gives.
+ *
+ * A chunk has to start at the beginning of a record, but a line break inside quotes does not end a record.
+ * So the quotes in every chunk are counted first, all chunks at once; whether a chunk starts inside quotes
+ * is then known from the counts before it, and each chunk is moved forward to the first line break
+ * outside of quotes.
+ * @author atara
+ */
+public class ParallelMovieLoader {
+	
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 24; //the number of bytes each thread parses at once, 16 MB
+	
+	/**
+	 * Loads the data set on the common fork-join pool.
+	 * @param file the data set, encoded in UTF-8, with the column titles on the first line
+	 * @return the list of all the movies in the data set
+	 * @throws IOException if the file cannot be read
+	 */
+	public static MovieList load(File file) throws IOException {
+		return load(file, new IngestPool());
+	}
+	
+	/**
+	 * Loads the data set on the common fork-join pool, sharing the strings and actors through the specified pool.
+	 * @param file the data set, encoded in UTF-8, with the column titles on the first line
+	 * @param pool the pool of strings and actors, which keeps the statistics of the load
+	 * @return the list of all the movies in the data set
+	 * @throws IOException if the file cannot be read
+	 */
+	public static MovieList load(File file, IngestPool pool) throws IOException {
+		return load(file, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, pool);
+	}
+	
+	/**
+	 * Loads the data set on the specified pool.
+	 * @param file the data set, encoded in UTF-8, with the column titles on the first line
+	 * @param pool the pool to parse the chunks on
+	 * @param chunkSize about how many bytes to parse in each task
+	 * @param strings the pool of strings and actors shared by all the chunks, which keeps the statistics of the load
+	 * @return the list of all the movies in the data set
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if chunkSize is not positive
+	 */
+	public static MovieList load(File file, ForkJoinPool pool, int chunkSize, IngestPool strings) throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("The chunk size must be positive.");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+			long[] rough = new long[chunks + 1]; //where each chunk would start, ignoring records
+			for (int i = 0; i <= chunks; i++) {
+				rough[i] = Math.min(size, (long) i * chunkSize);
+			}
+			
+			//count the quotes in every chunk
+			List<Callable<Long>> counts = new ArrayList<>();
+			for (int i = 0; i < chunks; i++) {
+				long from = rough[i];
+				long to = rough[i + 1];
+				counts.add(() -> countQuotes(channel, from, to, size));
+			}
+			List<Long> quotes = invokeAll(pool, counts);
+			
+			//move each chunk to the start of a record
+			List<Callable<Long>> aligns = new ArrayList<>();
+			long before = 0;
+			for (int i = 0; i < chunks; i++) {
+				long from = rough[i];
+				boolean insideQuotes = before % 2 == 1;
+				aligns.add(() -> recordStart(channel, from, insideQuotes, size));
+				before += quotes.get(i);
+			}
+			List<Long> starts = invokeAll(pool, aligns);
+			long[] bounds = new long[chunks + 1];
+			for (int i = 0; i < chunks; i++) {
+				bounds[i] = starts.get(i);
+			}
+			bounds[0] = 0; //the first chunk starts with the column titles, which it skips
+			bounds[chunks] = size;
+			
+			//parse the chunks, and put all their movies together in file order
+			List<Callable<ArrayList<Movie>>> parses = new ArrayList<>();
+			for (int i = 0; i < chunks; i++) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				parses.add(() -> parse(channel, from, to, strings));
+			}
+			List<ArrayList<Movie>> parsed = invokeAll(pool, parses);
+			int count = 0;
+			for (ArrayList<Movie> movies : parsed) {
+				count += movies.size();
+			}
+			Movie[] movies = new Movie[count];
+			count = 0;
+			for (ArrayList<Movie> chunk : parsed) {
+				for (Movie m : chunk) {
+					movies[count++] = m;
+				}
+			}
+			return MovieList.bulkLoad(movies, count);
+		}
+	}
+	
+	/**
+	 * Runs the specified tasks on the pool and waits for all of their results.
+	 * @param pool the pool to run the tasks on
+	 * @param tasks the tasks
+	 * @return the results of the tasks, in the same order
+	 * @throws IOException if one of the tasks could not read the file
+	 */
+	private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<>();
+		try {
+			for (Future<T> result : pool.invokeAll(tasks)) {
+				results.add(result.get());
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading.", e);
+		}
+		return results;
+	}
+	
+	/**
+	 * Maps the bytes of the file from the specified position, up to 2 GB of them.
+	 * @param channel the file
+	 * @param from the first byte to map
+	 * @param to one past the last byte wanted
+	 * @return the mapped bytes
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(to - from, Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Checks if a quote starts at the specified position: a straight double quote,
+	 * or the UTF-8 bytes of a curly one.
+	 * @param bytes the mapped bytes
+	 * @param i the position
+	 * @return the number of bytes of the quote, or 0 if there is no quote there
+	 */
+	private static int quoteAt(MappedByteBuffer bytes, int i) {
+		byte b = bytes.get(i);
+		if (b == '"') {
+			return 1;
+		}
+		if (b == (byte) 0xE2 && i + 2 < bytes.limit() && bytes.get(i + 1) == (byte) 0x80
+				&& (bytes.get(i + 2) == (byte) 0x9C || bytes.get(i + 2) == (byte) 0x9D)) {
+			return 3;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Counts the quotes which start in the specified range of the file.
+	 * @param channel the file
+	 * @param from the first byte of the range
+	 * @param to one past the last byte of the range
+	 * @param size the size of the file
+	 * @return the number of quotes
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long countQuotes(FileChannel channel, long from, long to, long size) throws IOException {
+		MappedByteBuffer bytes = map(channel, from, Math.min(size, to + 2)); //a curly quote may run past the end
+		int end = (int) (to - from);
+		long count = 0;
+		for (int i = 0; i < end; i++) {
+			if (quoteAt(bytes, i) > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Finds the first record which starts after the specified position.
+	 * @param channel the file
+	 * @param from the position to start looking from
+	 * @param insideQuotes true if the position is inside quotes
+	 * @param size the size of the file
+	 * @return the position of the first byte of the record, or the size of the file if there is none
+	 * @throws IOException if the file cannot be read, or a record is longer than 2 GB
+	 */
+	private static long recordStart(FileChannel channel, long from, boolean insideQuotes, long size) throws IOException {
+		if (from == 0 || from == size) {
+			return from;
+		}
+		MappedByteBuffer bytes = map(channel, from, size);
+		int i = 0;
+		while (i < bytes.limit()) {
+			int quote = quoteAt(bytes, i);
+			if (quote > 0) {
+				insideQuotes = !insideQuotes;
+				i += quote;
+			}
+			else if (bytes.get(i++) == '\n' && !insideQuotes) {
+				return from + i;
+			}
+		}
+		if (from + bytes.limit() < size) {
+			throw new IOException("A record near byte " + from + " is longer than 2 GB.");
+		}
+		return size;
+	}
+	
+	/**
+	 * Parses one chunk of the file.
+	 * @param channel the file
+	 * @param from the first byte of the chunk, which starts a record
+	 * @param to one past the last byte of the chunk
+	 * @param strings the pool of strings and actors shared by all the chunks
+	 * @return the movies in the chunk, in file order, each with its one location
+	 * @throws IOException if the file cannot be read, or the chunk is longer than 2 GB
+	 */
+	private static ArrayList<Movie> parse(FileChannel channel, long from, long to, IngestPool strings) throws IOException {
+		ArrayList<Movie> movies = new ArrayList<>();
+		if (to - from > Integer.MAX_VALUE) {
+			throw new IOException("The records from byte " + from + " are longer than 2 GB.");
+		}
+		if (from == to) {
+			return movies;
+		}
+		CharBuffer chars = StandardCharsets.UTF_8.decode(map(channel, from, to));
+		try (CSVReader csv = new CSVReader(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()))) {
+			CSVRecord data = new CSVRecord(); //reused for every record
+			IngestPool pool = new IngestPool(strings); //this thread's own pool, in front of the shared one
+			if (from == 0) {
+				csv.next(data); //skip the titles record
+			}
+			while (csv.next(data)) {
+				Movie current = SFMovieData.toMovie(data, pool);
+				if (current != null) {
+					movies.add(current);
+				}
+			}
+			strings.addStatistics(pool);
+		}
+		return movies;
+	}
+}
@@ -0,0 +1,407 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is an immutable, height balanced (AVL) binary search tree. Nothing in it ever changes:
+ * add and remove return a new version of the tree, and leave this one as it was.
+ *
+ * A new version only copies the nodes on the path from the root to the change, O(log n) of them, and
+ * shares every other node with the old version. So updates are cheap, clone is O(1), and any number of
+ * threads can read any version without locks while new versions are made. To publish versions to readers,
+ * keep the current one in an AtomicReference or a volatile field.
+ * @author atara
+ */
+public final class PersistentBST<E extends Comparable<E>> implements Iterable<E> {
+	
+	//instance variables of PersistentBST
+	private final Node<E> root; //the root of this version, or null if it is empty
+	private final int size; //the number of nodes in this version
+	
+	/**
+	 * Constructs a new empty tree.
+	 */
+	public PersistentBST() {
+		this(null, 0);
+	}
+	
+	/**
+	 * Constructs a version of the tree with the specified root.
+	 * @param root the root node
+	 * @param size the number of nodes below the root, including it
+	 */
+	private PersistentBST(Node<E> root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+	
+	/**
+	 * Builds a perfectly balanced tree from data which is already sorted, in O(n) time.
+	 * @param sorted the data, in strictly increasing order
+	 * @param count the number of elements of sorted to use
+	 * @return the tree
+	 * @throws IllegalArgumentException if an element is null, or the data is not in strictly increasing order
+	 */
+	public static <E extends Comparable<E>> PersistentBST<E> fromSorted(E[] sorted, int count) {
+		for (int i = 0; i < count; i++) {
+			if (sorted[i] == null) {
+				throw new IllegalArgumentException("Invalid data. Null cannot be added to the tree.");
+			}
+			if (i > 0 && sorted[i - 1].compareTo(sorted[i]) >= 0) {
+				throw new IllegalArgumentException("The data is not sorted, or has duplicates.");
+			}
+		}
+		return new PersistentBST<>(build(sorted, 0, count), count);
+	}
+	
+	/**
+	 * Private recursive method to build a balanced subtree out of the middle of a sorted range.
+	 * @param sorted the data
+	 * @param low the first index of the range
+	 * @param high one past the last index of the range
+	 * @return the root of the subtree, or null if the range is empty
+	 */
+	private static <E extends Comparable<E>> Node<E> build(E[] sorted, int low, int high) {
+		if (low >= high) {
+			return null;
+		}
+		int middle = (low + high) >>> 1;
+		return new Node<E>(sorted[middle], build(sorted, low, middle), build(sorted, middle + 1, high));
+	}
+	
+	/**
+	 * This method checks if this version is empty.
+	 * @return true when it has no nodes
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * This method gets the number of nodes in this version.
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns this version, since it can never change. Unlike BST.clone, this takes O(1) time.
+	 * @return this tree
+	 */
+	@Override
+	public PersistentBST<E> clone() {
+		return this;
+	}
+	
+	/**
+	 * Returns a version of the tree with the specified data added.
+	 * @param data the data to add
+	 * @return the new version, or this version if it already has data equal to the specified data
+	 * @throws IllegalArgumentException if data is null
+	 */
+	public PersistentBST<E> add(E data) {
+		if (data == null) {
+			throw new IllegalArgumentException("Invalid data. Null cannot be added to the tree.");
+		}
+		Node<E> added = add(root, data);
+		return added == root ? this : new PersistentBST<>(added, size + 1);
+	}
+	
+	/**
+	 * Private recursive method to add data below a node, copying the nodes on the way back up.
+	 * @param node the root of the subtree
+	 * @param data the data to add
+	 * @return the root of the new subtree, or node itself if the data was already there
+	 */
+	private static <E extends Comparable<E>> Node<E> add(Node<E> node, E data) {
+		if (node == null) {
+			return new Node<E>(data, null, null);
+		}
+		int cmp = data.compareTo(node.data);
+		if (cmp < 0) {
+			Node<E> left = add(node.left, data);
+			return left == node.left ? node : balance(node.data, left, node.right);
+		}
+		if (cmp > 0) {
+			Node<E> right = add(node.right, data);
+			return right == node.right ? node : balance(node.data, node.left, right);
+		}
+		return node; //already in the tree
+	}
+	
+	/**
+	 * Returns a version of the tree without the specified data.
+	 * @param data the data to remove
+	 * @return the new version, or this version if it has no data equal to the specified data
+	 */
+	public PersistentBST<E> remove(E data) {
+		if (data == null) {
+			return this;
+		}
+		Node<E> removed = remove(root, data);
+		return removed == root ? this : new PersistentBST<>(removed, size - 1);
+	}
+	
+	/**
+	 * Private recursive method to remove data below a node, copying the nodes on the way back up.
+	 * A node with two children is replaced by a copy with its successor's data.
+	 * @param node the root of the subtree
+	 * @param data the data to remove
+	 * @return the root of the new subtree, or node itself if the data was not there
+	 */
+	private static <E extends Comparable<E>> Node<E> remove(Node<E> node, E data) {
+		if (node == null) {
+			return null;
+		}
+		int cmp = data.compareTo(node.data);
+		if (cmp < 0) {
+			Node<E> left = remove(node.left, data);
+			return left == node.left ? node : balance(node.data, left, node.right);
+		}
+		if (cmp > 0) {
+			Node<E> right = remove(node.right, data);
+			return right == node.right ? node : balance(node.data, node.left, right);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node<E> successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(successor.data, node.left, remove(node.right, successor.data));
+	}
+	
+	/**
+	 * Makes a new node over two subtrees whose heights differ by at most two, rotating if they differ
+	 * by two to restore the AVL property. Only new nodes are made; the subtrees are not changed.
+	 * @param data the data of the new node
+	 * @param left the left subtree
+	 * @param right the right subtree
+	 * @return the root of the balanced subtree
+	 */
+	private static <E extends Comparable<E>> Node<E> balance(E data, Node<E> left, Node<E> right) {
+		int factor = height(left) - height(right);
+		//left heavy
+		if (factor > 1) {
+			if (height(left.left) < height(left.right)) { //left-right case
+				Node<E> pivot = left.right;
+				return new Node<E>(pivot.data, new Node<E>(left.data, left.left, pivot.left),
+						new Node<E>(data, pivot.right, right));
+			}
+			return new Node<E>(left.data, left.left, new Node<E>(data, left.right, right));
+		}
+		//right heavy
+		if (factor < -1) {
+			if (height(right.right) < height(right.left)) { //right-left case
+				Node<E> pivot = right.left;
+				return new Node<E>(pivot.data, new Node<E>(data, left, pivot.left),
+						new Node<E>(right.data, pivot.right, right.right));
+			}
+			return new Node<E>(right.data, new Node<E>(data, left, right.left), right.right);
+		}
+		return new Node<E>(data, left, right);
+	}
+	
+	/**
+	 * Returns the height of the specified subtree. An empty subtree has a height of 0.
+	 * @param node the root of the subtree
+	 * @return the height of the subtree
+	 */
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+	
+	/**
+	 * This method returns the data in this version equal to the specified data.
+	 * @param data the data to search for
+	 * @return the data in the tree, or null if there is none
+	 */
+	public E get(E data) {
+		if (data == null) {
+			return null;
+		}
+		Node<E> node = root;
+		while (node != null) {
+			int cmp = data.compareTo(node.data);
+			if (cmp == 0) {
+				return node.data;
+			}
+			node = cmp < 0 ? node.left : node.right;
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks if this version has data equal to the specified data.
+	 * @param data the data to search for
+	 * @return true if it does
+	 */
+	public boolean contains(E data) {
+		return get(data) != null;
+	}
+	
+	/**
+	 * Returns the smallest data in this version.
+	 * @return the first data inorder
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public E first() {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		Node<E> node = root;
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node.data;
+	}
+	
+	/**
+	 * Returns the largest data in this version.
+	 * @return the last data inorder
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public E last() {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		Node<E> node = root;
+		while (node.right != null) {
+			node = node.right;
+		}
+		return node.data;
+	}
+	
+	/**
+	 * Returns an iterator over the data of this version, inorder. Later versions do not affect it.
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new InorderIterator(null, false, null, false);
+	}
+	
+	/**
+	 * Returns a view of the data of this version from fromElement to toElement, inorder.
+	 * Each iterator over it descends the tree once, so it takes O(log n + k) time for k elements.
+	 * @param fromElement the low end of the range
+	 * @param fromInclusive true if the low end itself is in the range
+	 * @param toElement the high end of the range
+	 * @param toInclusive true if the high end itself is in the range
+	 * @return the data in the range, inorder
+	 * @throws IllegalArgumentException if an end of the range is null, or fromElement is greater than toElement
+	 */
+	public Iterable<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+		if (fromElement == null || toElement == null) {
+			throw new IllegalArgumentException("The ends of the range cannot be null.");
+		}
+		if (fromElement.compareTo(toElement) > 0) {
+			throw new IllegalArgumentException("The start of the range is greater than its end.");
+		}
+		return () -> new InorderIterator(fromElement, fromInclusive, toElement, toInclusive);
+	}
+	
+	/**
+	 * Returns the data of this version inorder, one per line, like BST.toString.
+	 * @return the String representation of this version
+	 */
+	@Override
+	public String toString() {
+		if (isEmpty()) {
+			return "Empty list.";
+		}
+		StringBuilder result = new StringBuilder();
+		for (E data : this) {
+			result.append(data).append('\n');
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * This class traverses a version of the tree inorder, keeping a stack of the nodes whose data and right
+	 * subtrees are still to be visited. The version cannot change, so it never has to check for changes.
+	 */
+	private class InorderIterator implements Iterator<E> {
+		private final Node<E>[] stack; //the nodes still to be visited, no more than the height of the tree
+		private int top; //the number of nodes on the stack
+		private final E high; //the high end of the range, or null if there is none
+		private final boolean highInclusive; //true if high itself is in the range
+		
+		/**
+		 * Constructs a new iterator, and pushes the path down to the first node in the range.
+		 * @param low the low end of the range, or null to start at the first node
+		 * @param lowInclusive true if low itself is in the range
+		 * @param high the high end of the range, or null to go to the last node
+		 * @param highInclusive true if high itself is in the range
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public InorderIterator(E low, boolean lowInclusive, E high, boolean highInclusive) {
+			stack = (Node<E>[]) new Node[height(root)];
+			this.high = high;
+			this.highInclusive = highInclusive;
+			Node<E> node = root;
+			while (node != null) {
+				int cmp = low == null ? 1 : node.data.compareTo(low);
+				if (cmp > 0 || (cmp == 0 && lowInclusive)) {
+					stack[top++] = node; //in range, and so might be something to its left
+					node = node.left;
+				}
+				else {
+					node = node.right; //too small, and so is its whole left subtree
+				}
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (top == 0) {
+				return false;
+			}
+			if (high == null) {
+				return true;
+			}
+			int cmp = stack[top - 1].data.compareTo(high);
+			return cmp < 0 || (cmp == 0 && highInclusive);
+		}
+		
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node<E> node = stack[--top];
+			for (Node<E> next = node.right; next != null; next = next.left) {
+				stack[top++] = next;
+			}
+			return node.data;
+		}
+	}
+	
+	/**
+	 * This class is a node of the tree. Its fields are final, so a node can be shared by any number
+	 * of versions and threads.
+	 */
+	private static final class Node<E extends Comparable<E>> {
+		private final E data; //the data of the node
+		private final Node<E> left; //the left child
+		private final Node<E> right; //the right child
+		private final int height; //the height of the subtree rooted at this node
+		
+		/**
+		 * Constructs a new node, computing its height from its children.
+		 * @param data the data to be stored in this node
+		 * @param left the left child
+		 * @param right the right child
+		 */
+		private Node(E data, Node<E> left, Node<E> right) {
+			this.data = data;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+import java.util.List;
+
+/**
+ * This class is one search query, as the user types it:
+ *     title KEYWORD
+ *     actor KEYWORD
+ *     year FROM TO, optionally followed by title KEYWORD or actor KEYWORD
+ *     complete title PREFIX or complete actor PREFIX
+ * The command is not case sensitive, and the keyword is everything after the first space.
+ * It is used by the interactive program and by the batch mode, so both read queries the same way.
+ * @author atara
+ */
+public final class Query {
+	
+	/**
+	 * The message for a query that is missing its keyword or has years which are not numbers.
+	 */
+	public static final String NOT_VALID = "This is not a valid query. Try again.";
+	
+	/**
+	 * The message for a query with an unknown command.
+	 */
+	public static final String INVALID = "Invalid query.";
+	
+	/**
+	 * The kinds of query.
+	 */
+	public enum Kind {
+		TITLE, ACTOR, YEARS, COMPLETE_TITLE, COMPLETE_ACTOR
+	}
+	
+	//instance variables of Query
+	private final String text; //the query as it was typed
+	private final Kind kind; //what is searched
+	private final String keyword; //the keyword or prefix, or null for a search of years only
+	private final boolean ranged; //true if the search is limited to the years from and to
+	private final int from; //the first year, if ranged
+	private final int to; //the last year, if ranged
+	
+	/**
+	 * Constructs a parsed query.
+	 * @param text the query as it was typed
+	 * @param kind what is searched
+	 * @param keyword the keyword or prefix, or null
+	 * @param ranged true if the search is limited to a range of years
+	 * @param from the first year
+	 * @param to the last year
+	 */
+	private Query(String text, Kind kind, String keyword, boolean ranged, int from, int to) {
+		this.text = text;
+		this.kind = kind;
+		this.keyword = keyword;
+		this.ranged = ranged;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Parses a query.
+	 * @param line the query as it was typed
+	 * @return the query
+	 * @throws IllegalArgumentException if the line is not a valid query, with NOT_VALID or INVALID as its message
+	 */
+	public static Query parse(String line) {
+		int space = line.indexOf(" ");
+		if (space == -1) {
+			throw new IllegalArgumentException(NOT_VALID);
+		}
+		String command = line.substring(0, space);
+		String rest = line.substring(space + 1);
+		if (command.equalsIgnoreCase("title")) {
+			return new Query(line, Kind.TITLE, rest, false, 0, 0);
+		}
+		if (command.equalsIgnoreCase("actor")) {
+			return new Query(line, Kind.ACTOR, rest, false, 0, 0);
+		}
+		if (command.equalsIgnoreCase("year")) {
+			//FROM TO, then optionally title KEYWORD or actor KEYWORD
+			String[] parts = rest.trim().split("\\s+", 4);
+			if (parts.length != 2 && parts.length != 4) {
+				throw new IllegalArgumentException(NOT_VALID);
+			}
+			int from;
+			int to;
+			try {
+				from = Integer.parseInt(parts[0]);
+				to = Integer.parseInt(parts[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(NOT_VALID); //the years are not numbers
+			}
+			if (parts.length == 2) {
+				return new Query(line, Kind.YEARS, null, true, from, to);
+			}
+			if (parts[2].equalsIgnoreCase("title")) {
+				return new Query(line, Kind.TITLE, parts[3], true, from, to);
+			}
+			if (parts[2].equalsIgnoreCase("actor")) {
+				return new Query(line, Kind.ACTOR, parts[3], true, from, to);
+			}
+			throw new IllegalArgumentException(NOT_VALID);
+		}
+		if (command.equalsIgnoreCase("complete")) {
+			int second = rest.indexOf(" ");
+			String what = second == -1 ? rest : rest.substring(0, second);
+			String prefix = second == -1 ? "" : rest.substring(second + 1);
+			if (what.equalsIgnoreCase("title")) {
+				return new Query(line, Kind.COMPLETE_TITLE, prefix, false, 0, 0);
+			}
+			if (what.equalsIgnoreCase("actor")) {
+				return new Query(line, Kind.COMPLETE_ACTOR, prefix, false, 0, 0);
+			}
+		}
+		throw new IllegalArgumentException(INVALID); //neither titles, actors, years nor completions
+	}
+	
+	/**
+	 * Checks if this query asks for completions rather than movies.
+	 * @return true for complete title and complete actor
+	 */
+	public boolean isCompletion() {
+		return kind == Kind.COMPLETE_TITLE || kind == Kind.COMPLETE_ACTOR;
+	}
+	
+	/**
+	 * Runs this search on the specified catalog.
+	 * @param catalog the movies to search
+	 * @return a MovieList of the matching movies, or null if there are none
+	 * @throws IllegalStateException if this query asks for completions
+	 */
+	public MovieList run(MovieCatalog catalog) {
+		switch (kind) {
+		case TITLE:
+			return ranged ? catalog.getMatchingTitles(keyword, from, to) : catalog.getMatchingTitles(keyword);
+		case ACTOR:
+			return ranged ? catalog.getMatchingActor(keyword, from, to) : catalog.getMatchingActor(keyword);
+		case YEARS:
+			return catalog.getMatchingYears(from, to);
+		default:
+			throw new IllegalStateException("A completion is not a search.");
+		}
+	}
+	
+	/**
+	 * Completes the prefix of this query.
+	 * @param suggestions the suggestions to use
+	 * @param k the most completions to return
+	 * @return the completions, most popular first
+	 * @throws IllegalStateException if this query is a search
+	 */
+	public List<String> complete(Autocomplete suggestions, int k) {
+		switch (kind) {
+		case COMPLETE_TITLE:
+			return suggestions.completeTitle(keyword, k);
+		case COMPLETE_ACTOR:
+			return suggestions.completeActor(keyword, k);
+		default:
+			throw new IllegalStateException("A search is not a completion.");
+		}
+	}
+	
+	/**
+	 * Returns what this query searches.
+	 * @return the kind of query
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Returns the query as it was typed.
+	 * @return the text of the query
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+}
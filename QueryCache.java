@@ -0,0 +1,392 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * This class remembers the results of recent searches of a MovieCatalog, so a search that is asked for
+ * again is answered without searching. It is a MovieCatalog itself, and is put in front of the catalog
+ * it caches. Searches are cached by their kind, their keyword folded to lower case, and their years.
+ *
+ * The cache is bounded by weight, not by the number of results: each result weighs one plus the number of
+ * movies in it, so one broad search can take the room of many narrow ones. When the cache is full, the least
+ * recently used results are the victims, but a new result is only let in (TinyLFU admission) if it has been
+ * asked for more often than each of the victims it would push out, so the few keywords that make up most of
+ * the traffic are not pushed out by a burst of searches that are never asked for again. How often each search
+ * was asked for is estimated in a small count-min sketch, which is halved now and then so that old
+ * popularity fades.
+ *
+ * A hit only reads a concurrent map, and never waits: it moves the result to the front of the recency list
+ * only if no other thread holds the lock at that moment. A miss runs the search and then takes the lock to
+ * admit the result. Results are made read only, since they are shared by all callers. The cache belongs to
+ * one snapshot of the movies, so when the data set is reloaded the new snapshot starts with an empty cache.
+ * @author atara
+ */
+public class QueryCache implements MovieCatalog {
+	
+	//instance variables of QueryCache
+	private final MovieCatalog catalog; //the catalog that is searched on a miss
+	private final long maxWeight; //the most weight of results kept
+	private final ConcurrentHashMap<String, Node> results = new ConcurrentHashMap<>(); //the cached results by key
+	private final ReentrantLock lock = new ReentrantLock(); //guards the recency list, weight and admission
+	private final FrequencySketch sketch; //how often each key was asked for, estimated
+	private Node head; //the most recently used result
+	private Node tail; //the least recently used result, the next victim
+	private long weight; //the weight of the cached results
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder(); //results pushed out to make room
+	private final LongAdder rejections = new LongAdder(); //results not let in, because the victims were more popular
+	
+	/**
+	 * Constructs an empty cache in front of the specified catalog.
+	 * @param catalog the catalog to search on a miss
+	 * @param maxWeight the most weight of results to keep, where a result weighs one plus its number of movies
+	 * @throws IllegalArgumentException if maxWeight is not positive
+	 */
+	public QueryCache(MovieCatalog catalog, long maxWeight) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("The size of the cache must be positive.");
+		}
+		this.catalog = catalog;
+		this.maxWeight = maxWeight;
+		sketch = new FrequencySketch((int) Math.min(maxWeight, 1 << 16));
+	}
+	
+	@Override
+	public int size() {
+		return catalog.size();
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title) {
+		if (title == null) {
+			return null;
+		}
+		return get("t\0" + MovieList.fold(title), () -> catalog.getMatchingTitles(title));
+	}
+	
+	@Override
+	public MovieList getMatchingActor(String actor) {
+		if (actor == null) {
+			return null;
+		}
+		return get("a\0" + MovieList.fold(actor), () -> catalog.getMatchingActor(actor));
+	}
+	
+	@Override
+	public MovieList getMatchingYears(int from, int to) {
+		return get("y\0" + from + "\0" + to, () -> catalog.getMatchingYears(from, to));
+	}
+	
+	@Override
+	public MovieList getMatchingTitles(String title, int from, int to) {
+		if (title == null) {
+			return null;
+		}
+		return get("ty\0" + from + "\0" + to + "\0" + MovieList.fold(title), () -> catalog.getMatchingTitles(title, from, to));
+	}
+	
+	@Override
+	public MovieList getMatchingActor(String actor, int from, int to) {
+		if (actor == null) {
+			return null;
+		}
+		return get("ay\0" + from + "\0" + to + "\0" + MovieList.fold(actor), () -> catalog.getMatchingActor(actor, from, to));
+	}
+	
+	/**
+	 * Returns the cached result for a key, or runs the search and offers its result to the cache.
+	 * @param key the kind of search, its years and its folded keyword
+	 * @param search runs the search on the catalog
+	 * @return the result, which is read only, or null if nothing matched
+	 */
+	private MovieList get(String key, Supplier<MovieList> search) {
+		int hash = spread(key.hashCode());
+		sketch.increment(hash);
+		Node node = results.get(key);
+		if (node != null) {
+			hits.increment();
+			if (lock.tryLock()) { //if another thread has the lock, the order is left as it is
+				try {
+					if (node.linked) {
+						unlink(node);
+						linkFirst(node);
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+			return node.result;
+		}
+		misses.increment();
+		MovieList result = search.get();
+		if (result != null) {
+			result.makeReadOnly(); //the same list is returned to every caller from now on
+		}
+		admit(key, hash, result);
+		return result;
+	}
+	
+	/**
+	 * Adds a new result to the cache if there is room for it, or if it is more popular than the least recently
+	 * used results that would have to be evicted to make room for it.
+	 * @param key the key of the result
+	 * @param hash the spread hash code of the key
+	 * @param result the result, or null if nothing matched
+	 */
+	private void admit(String key, int hash, MovieList result) {
+		long resultWeight = 1 + (result == null ? 0 : result.size());
+		if (resultWeight > maxWeight) {
+			return; //it would never fit
+		}
+		lock.lock();
+		try {
+			if (results.containsKey(key)) {
+				return; //another thread got there first
+			}
+			//compare with the victims before evicting any of them
+			int frequency = sketch.frequency(hash);
+			long needed = weight + resultWeight - maxWeight;
+			for (Node victim = tail; needed > 0; victim = victim.prev) {
+				if (sketch.frequency(victim.hash) > frequency) {
+					rejections.increment();
+					return;
+				}
+				needed -= victim.weight;
+			}
+			while (weight + resultWeight > maxWeight) {
+				Node victim = tail;
+				unlink(victim);
+				results.remove(victim.key);
+				weight -= victim.weight;
+				evictions.increment();
+			}
+			Node node = new Node(key, hash, result, resultWeight);
+			linkFirst(node);
+			weight += resultWeight;
+			results.put(key, node);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Puts a node at the front of the recency list. The lock must be held.
+	 * @param node the node
+	 */
+	private void linkFirst(Node node) {
+		node.prev = null;
+		node.next = head;
+		if (head != null) {
+			head.prev = node;
+		}
+		head = node;
+		if (tail == null) {
+			tail = node;
+		}
+		node.linked = true;
+	}
+	
+	/**
+	 * Takes a node out of the recency list. The lock must be held.
+	 * @param node the node
+	 */
+	private void unlink(Node node) {
+		if (node.prev != null) {
+			node.prev.next = node.next;
+		}
+		else {
+			head = node.next;
+		}
+		if (node.next != null) {
+			node.next.prev = node.prev;
+		}
+		else {
+			tail = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.linked = false;
+	}
+	
+	/**
+	 * Mixes the high bits of a hash code into the low bits.
+	 * @param hash the hash code
+	 * @return the mixed hash code
+	 */
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Returns the number of searches answered from the cache.
+	 * @return the number of hits
+	 */
+	public long hitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Returns the number of searches that had to be run on the catalog.
+	 * @return the number of misses
+	 */
+	public long missCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Returns the share of searches answered from the cache.
+	 * @return the hit rate, from 0 to 1, or 0 if there were no searches
+	 */
+	public double hitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+	
+	/**
+	 * Returns the number of results pushed out of the cache to make room for others.
+	 * @return the number of evictions
+	 */
+	public long evictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * Returns the number of results that were not let into the cache, because the results they would
+	 * have pushed out were asked for more often.
+	 * @return the number of rejections
+	 */
+	public long rejectionCount() {
+		return rejections.sum();
+	}
+	
+	/**
+	 * Returns the number of results in the cache.
+	 * @return the number of results
+	 */
+	public int cachedCount() {
+		return results.size();
+	}
+	
+	/**
+	 * Returns the weight of the results in the cache. It is read under the lock, since admissions change it.
+	 * @return the weight, one plus the number of movies for each result
+	 */
+	public long weight() {
+		lock.lock();
+		try {
+			return weight;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns the statistics of the cache.
+	 * @return the hits, misses, hit rate, evictions, rejections and how full the cache is
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d rejections, %d results weighing %d of %d",
+				hitCount(), missCount(), 100 * hitRate(), evictionCount(), rejectionCount(), cachedCount(), weight(), maxWeight);
+	}
+	
+	/**
+	 * This class is a cached result, and its place in the recency list.
+	 */
+	private static class Node {
+		private final String key; //the key of the search
+		private final int hash; //the spread hash code of the key
+		private final MovieList result; //the result, or null if nothing matched
+		private final long weight; //one plus the number of movies in the result
+		private Node prev; //the more recently used neighbour, guarded by the lock
+		private Node next; //the less recently used neighbour, guarded by the lock
+		private boolean linked; //true while the node is in the recency list, guarded by the lock
+		
+		/**
+		 * Constructs a new node.
+		 * @param key the key of the search
+		 * @param hash the spread hash code of the key
+		 * @param result the result
+		 * @param weight the weight of the result
+		 */
+		private Node(String key, int hash, MovieList result, long weight) {
+			this.key = key;
+			this.hash = hash;
+			this.result = result;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * This class estimates how often each key was asked for, in four rows of small counters (a count-min sketch).
+	 * The estimate is the smallest of the key's four counters, which can only be too high, never too low.
+	 * Counters stop at 15, and all of them are halved after every ten increments per counter of a row, so that
+	 * keys which were popular long ago fade away. Threads update the counters without locking, so an increment
+	 * is now and then lost, which only makes the estimate a little less exact.
+	 */
+	private static class FrequencySketch {
+		private static final int[] SEEDS = {0x97CB3127, 0xB1A83E69, 0x5CF2D1E3, 0xE2C63A4D}; //one per row
+		private final byte[] counters; //four rows of counters, one after the other
+		private final int mask; //the width of a row minus one
+		private final int resetAt; //the number of increments after which all counters are halved
+		private int increments; //the increments since the last halving
+		
+		/**
+		 * Constructs a sketch for about the specified number of keys.
+		 * @param keys the number of keys expected
+		 */
+		private FrequencySketch(int keys) {
+			int width = Integer.highestOneBit(Math.max(16, keys - 1) * 2);
+			counters = new byte[4 * width];
+			mask = width - 1;
+			resetAt = 10 * width;
+		}
+		
+		/**
+		 * Counts one more request for a key.
+		 * @param hash the spread hash code of the key
+		 */
+		private void increment(int hash) {
+			for (int row = 0; row < 4; row++) {
+				int i = index(hash, row);
+				if (counters[i] < 15) {
+					counters[i]++;
+				}
+			}
+			if (++increments >= resetAt) {
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] >>= 1;
+				}
+				increments = 0;
+			}
+		}
+		
+		/**
+		 * Estimates how often a key was asked for.
+		 * @param hash the spread hash code of the key
+		 * @return the estimate, from 0 to 15
+		 */
+		private int frequency(int hash) {
+			int min = 15;
+			for (int row = 0; row < 4; row++) {
+				min = Math.min(min, counters[index(hash, row)]);
+			}
+			return min;
+		}
+		
+		/**
+		 * Returns the counter of a key in a row.
+		 * @param hash the spread hash code of the key
+		 * @param row the row
+		 * @return the index of the counter
+		 */
+		private int index(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * SEEDS[row];
+			return row * (mask + 1) + ((h ^ (h >>> 15)) & mask);
+		}
+	}
+}
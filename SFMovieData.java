@@ -1,9 +1,23 @@
 
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -23,6 +37,66 @@ public class SFMovieData {
 		
 		File myFile = new File(args[0]); //Set argument to file
 		
+		//Options after the file name
+		String indexKind = null; //the kind of search index to build, or null to scan the list
+		boolean parallel = false; //true to load the file on all cores
+		File snapshotFile = null; //the binary snapshot to start from, or null to always read the file
+		String store = "heap"; //how the movies are stored for searching
+		long cacheWeight = 100000; //the most movies kept in cached search results, or 0 for no cache
+		int serverPort = -1; //the port to serve searches over HTTP on, or -1 for the interactive mode
+		String batchFile = null; //the file of queries to run without the prompt, - for the standard input, or null
+		boolean json = false; //true to write the results of a batch as JSON Lines
+		boolean verbose = false; //true to report what was loaded and built on System.err
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-index") && i + 1 < args.length) {
+				indexKind = args[++i];
+			}
+			else if (args[i].equals("-parallel")) {
+				parallel = true;
+			}
+			else if (args[i].equals("-snapshot") && i + 1 < args.length) {
+				snapshotFile = new File(args[++i]);
+			}
+			else if (args[i].equals("-store") && i + 1 < args.length) {
+				store = args[++i];
+			}
+			else if (args[i].equals("-cache") && i + 1 < args.length) {
+				try {
+					cacheWeight = Long.parseLong(args[++i]);
+				} catch (NumberFormatException e) {
+					cacheWeight = -1; //reported below
+				}
+				if (cacheWeight < 0) {
+					System.err.println("Error: the cache size "+args[i]+" is not valid.\n");
+					System.exit(1);
+				}
+			}
+			else if (args[i].equals("-batch") && i + 1 < args.length) {
+				batchFile = args[++i];
+			}
+			else if (args[i].equals("-json")) {
+				json = true;
+			}
+			else if (args[i].equals("-verbose")) {
+				verbose = true;
+			}
+			else if (args[i].equals("-server") && i + 1 < args.length) {
+				try {
+					serverPort = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					serverPort = -2; //reported below
+				}
+				if (serverPort < 0 || serverPort > 65535) {
+					System.err.println("Error: the port "+args[i]+" is not valid.\n");
+					System.exit(1);
+				}
+			}
+			else {
+				System.err.println("Error: unknown option "+args[i]+"\n"); //print error message
+				System.exit(1); //terminate program
+			}
+		}
+		
 		//File doesn't exist
 		if(!myFile.exists()) {
 			System.err.println("Error: the file "+myFile.getAbsolutePath()+" does not exist.\n"); //print error message
@@ -36,119 +110,353 @@ public class SFMovieData {
 			System.exit(1); //terminate program
 		}
 		
-		//open the file for reading 
-				Scanner myScanner = null; //declare scanner
-				
-				try { //try to read the file
-					myScanner = new Scanner (myFile); //new scanner to scan the file
-				} catch (FileNotFoundException e) {
-					System.err.println("Error: the file "+myFile.getAbsolutePath()+
-							" cannot be opened for reading.\n");
-					System.exit(1); //terminate with 1 to show that program did not run properly
-				}
-				
-				
-				//All data must be trimmed to prevent issues with blank spaces in the substring match!
-				
-				String line = null; //declare line as null
-				myScanner.nextLine(); //skip line to avoid the titles line from being read in
-				
-				MovieList list = new MovieList(); //declare an empty list
+		//load the movies and build what is searched, as one snapshot which can be loaded again in the background
+		final boolean loadInParallel = parallel;
+		final String index = indexKind;
+		final String storeKind = store;
+		final long cacheSize = cacheWeight;
+		final File snapshot = snapshotFile;
+		final boolean report = verbose;
+		ConcurrentMovieCatalog catalog = null; //what the searches run on
+		try {
+			catalog = new ConcurrentMovieCatalog(() -> loadSnapshot(myFile, snapshot, loadInParallel, index, storeKind, cacheSize, report));
+		} catch (FileNotFoundException e) {
+			System.err.println("Error: the file "+myFile.getAbsolutePath()+
+					" cannot be opened for reading.\n");
+			System.exit(1); //terminate with 1 to show that program did not run properly
+		} catch (IOException e) {
+			System.err.println("Error: the file "+myFile.getAbsolutePath()+
+					" could not be read: "+e.getMessage()+"\n");
+			System.exit(1);
+		} catch (IllegalArgumentException e) { //an unknown index or store
+			System.err.println("Error: "+e.getMessage()+"\n");
+			System.exit(1);
+		}
 				
-				while (myScanner.hasNextLine()) { //while there are more lines in the file
-					try { 
-							line = myScanner.nextLine(); //read in the next line
-							ArrayList<String> data = splitCSVLine(line); //returns entries
-							
-							//check data to make sure that title, year, location and actor1 are not blank
-							if (data.size() >= 9 && !(data.get(0).length()==0 || data.get(1).length()==0  || data.get(2).length()==0 || data.get(8).length()==0)) { 
-								
-								//set all the data to its string in the entries ArrayList
-								String title = data.get(0).trim(); 
-								
-								String temp = data.get(1).trim(); 
-								int relYear = Integer.parseInt(temp); //parse the string representing year into an int
-								
-								Location location = new Location(data.get(2).trim(), data.get(3).trim()); 
-								
-								String director = data.get(6).trim();
-								
-								String writer = data.get(7).trim();
-								
-								Actor a1 = new Actor((String) data.get(8).trim());
-								
-								Actor a2 = null;
-								if (9 < data.size() && data.get(9).length() > 0)
-									a2 = new Actor((String) data.get(9).trim());
-								
-								Actor a3 = null;
-								if (10 < data.size() && data.get(10).length() > 0)
-									a3 = new Actor((String) data.get(10).trim());
-								
-								Movie current = new Movie(title, relYear, director, writer, a1, a2, a3); //construct a movie with the above data
-								current.addLocation(location); //adds location to movie
-								list.addMovie(current); //adds movie to list
-							}
-						}
-						
-					catch (NoSuchElementException ex ) {
-						//caused by an incomplete or miss-formatted line in the input file
-						System.err.println(line);
-						continue; 	
-					}
-				}
+		//batch mode: runs the queries of a file and ends
+		if (batchFile != null) {
+			try (Reader queries = batchFile.equals("-") ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+					: new InputStreamReader(new FileInputStream(batchFile), StandardCharsets.UTF_8)) {
+				long start = System.nanoTime();
+				int count = new BatchQueries(catalog, json).run(queries, System.out);
+				System.err.println("Ran "+count+" queries in "+(System.nanoTime() - start) / 1000000+" ms.");
+				printCacheStatistics(catalog);
+			} catch (FileNotFoundException e) {
+				System.err.println("Error: the query file "+batchFile+" cannot be opened for reading.\n");
+				System.exit(1);
+			} catch (IOException e) {
+				System.err.println("Error: the queries could not be run: "+e.getMessage()+"\n");
+				System.exit(1);
+			}
+			catalog.close();
+			return;
+		}
+		else if (json) {
+			System.err.println("Error: -json is only for the results of -batch.\n");
+			System.exit(1);
+		}
+		
+		//server mode: runs until the process is stopped
+		if (serverPort >= 0) {
+			try {
+				MovieServer server = new MovieServer(catalog, serverPort);
+				server.start();
+				System.err.println("Serving "+catalog.size()+" movies on http://localhost:"+server.getPort()+"/");
+			} catch (IOException e) {
+				System.err.println("Error: the server could not be started: "+e.getMessage()+"\n");
+				System.exit(1);
+			}
+			return;
+		}
 				
 				//interactive mode: 		
 				Scanner userInput  = new Scanner (System.in); 
 				String userValue = "";
+				Writer results = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16); //results are streamed through it
+				//when the console is UTF-8, the movies are written from the bytes they keep, straight to standard output (never closed)
+				GatheringByteChannel stdout = Charset.defaultCharset().equals(StandardCharsets.UTF_8)
+						? new FileOutputStream(FileDescriptor.out).getChannel() : null;
 				
 					do {
 						//Prints these lines to prompt the user to enter a query
 						System.out.println("Search the database by matching keywords to titles or actor names.");
 						System.out.println("   To search for matching titles, enter\n\t title KEYWORD");
 						System.out.println("   To search for matching actor names, enter\n\t actor KEYWORD");
+						System.out.println("   To search for movies released in a range of years, enter\n\t year FROM TO");
+						System.out.println("   optionally followed by title KEYWORD or actor KEYWORD");
+						System.out.println("   To complete the start of a title or actor name, enter\n\t complete title PREFIX\n\t complete actor PREFIX");
+						System.out.println("   To load the data set again in the background, enter\n\t reload");
 						System.out.println("   To finish the program, enter\n\t quit");
 						System.out.println("\n\n");
 						System.out.println("Please enter your search query:");
 							
 						//gets value from the user 
 							userValue = userInput.nextLine();
-							if (!userValue.equalsIgnoreCase("quit")) { //if the user did not enter "quit"
-								int space = userValue.indexOf(" ");
-								if (space == -1) {
-									System.out.println("This is not a valid query. Try again.");
-					 			}
-								else {
-									if (userValue.substring(0,space).equalsIgnoreCase("title")) {
-										String title = userValue.substring(space + 1); //the title is the rest
-											
-										MovieList resultList = list.getMatchingTitles(title); //make a list of results of the matching titles
+							if (userValue.trim().equalsIgnoreCase("reload")) { //searches go on with the old movies until it is done
+								System.out.println("Reloading the data set in the background.");
+								catalog.reloadInBackground().whenComplete((reloaded, e) -> {
+									if (e != null) {
+										System.err.println("Warning: the reload failed, so the old data set is still searched: "
+												+e.getCause().getMessage());
+									}
+									else {
+										System.err.println("Reloaded "+reloaded.getCatalog().size()+" movies.");
+									}
+								});
+							}
+							else if (!userValue.equalsIgnoreCase("quit")) { //if the user did not enter "quit"
+								Query query = null;
+								try {
+									query = Query.parse(userValue);
+								} catch (IllegalArgumentException e) {
+									System.out.println(e.getMessage()); //inform the user that this query is invalid
+								}
+								if (query != null && query.isCompletion()) {
+									List<String> completions = query.complete(catalog.current().getSuggestions(), 10);
+									if (completions.isEmpty()) {
+										System.out.println("No matches found. Try again.");
+									}
+									else {
+										for (String completion : completions) {
+											System.out.println(completion);
+										}
+									}
+								}
+								else if (query != null) {
+									try {
+										MovieList resultList = query.run(catalog); //make a list of the matching movies
 										if (resultList != null) { //if there are matching results
-											System.out.println(resultList); //print them!
+											printResults(resultList, results, stdout); //print them!
 										}
 										else {
-											System.out.println("No matches found. Try again."); //inform the user that there are no matches 
+											System.out.println("No matches found. Try again."); //inform the user that there are no matches
 										}
-									}
-									else if (userValue.substring(0,space).equalsIgnoreCase("actor")) {
-											String actor = userValue.substring(space + 1);
-												
-											MovieList resultList = list.getMatchingActor(actor); //make a list of results of the matching actors
-											if (resultList != null) { //if there are matching results
-												System.out.println(resultList); //print them!
-											}
-											else {
-												System.out.println("No matches found. Try again."); //inform the user that there are no matches
-											}
-									} 
-									else { //the query was not for a title or actor name
-										System.out.println("Invalid query."); //inform the user that this query is invalid
+									} catch (IllegalArgumentException e) {
+										System.out.println(e.getMessage()); //the query could not be run, but the program goes on
 									}
 								}
 							}
 						} while (!userValue.equalsIgnoreCase("quit")); //this program runs until the user enters "quit"
 				userInput.close();	//close System.in
+				printCacheStatistics(catalog);
+				catalog.close();
+	}
+	
+	/**
+	 * Prints a list of results, the same as System.out.println would, but writes each movie straight
+	 * to the buffered writer instead of building one String for the whole list first. If there is a
+	 * channel to standard output, the movies are instead written to it from the UTF-8 bytes they keep,
+	 * in gathering writes, after everything buffered for System.out has been flushed.
+	 * @param list the results
+	 * @param out a buffered writer over System.out, which is flushed at the end
+	 * @param stdout a channel to standard output, or null if the console is not UTF-8
+	 */
+	private static void printResults(MovieList list, Writer out, GatheringByteChannel stdout) {
+		try {
+			if (stdout != null) {
+				out.flush();
+				System.out.flush();
+				list.writeTo(stdout);
+			}
+			else {
+				list.appendTo(out);
+			}
+			out.append(System.lineSeparator());
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //System.out never throws
+		}
+	}
+	
+	/**
+	 * Loads the movies, from the binary snapshot if it is up to date or else from the file, and builds
+	 * the search index and store that were asked for. Used for the first load and for every reload.
+	 * @param myFile the data set
+	 * @param snapshotFile the binary snapshot to start from and to save to, or null
+	 * @param parallel true to read the file on all cores
+	 * @param indexKind the kind of search index to build, or null to scan the list
+	 * @param store how the movies are stored for searching: heap, columns or offheap
+	 * @param cacheWeight the most movies kept in cached search results, or 0 for no cache
+	 * @param verbose true to report how many strings were shared and how big the index or store is on System.err
+	 * @return the snapshot of the movies
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the index or store is unknown, or an index is asked for with a store
+	 * other than heap, which would never search it
+	 */
+	static ConcurrentMovieCatalog.Snapshot loadSnapshot(File myFile, File snapshotFile, boolean parallel,
+			String indexKind, String store, long cacheWeight, boolean verbose) throws IOException {
+		if (indexKind != null && !store.equals("heap")) { //the other stores search without it
+			throw new IllegalArgumentException("the index is only searched with the heap store, not with "+store);
+		}
+		
+		//start from the snapshot, if there is one which is up to date with the file
+		MovieList list = null;
+		IngestPool pool = new IngestPool(); //shares the strings repeated on every row while loading
+		if (snapshotFile != null) {
+			try {
+				list = MovieSnapshot.read(snapshotFile, myFile);
+			} catch (IOException e) {
+				System.err.println("Warning: the snapshot "+snapshotFile.getAbsolutePath()+
+						" could not be read: "+e.getMessage());
+			}
+		}
+		
+		//otherwise read the file
+		if (list == null) {
+			long sourceLength = myFile.length(); //the stamp of the snapshot, taken before the file is read
+			long sourceModified = myFile.lastModified();
+			if (parallel) { //the parallel loader maps the file itself
+				list = ParallelMovieLoader.load(myFile, pool);
+			}
+			else { //the data set is UTF-8
+				list = loadMovies(new InputStreamReader(new FileInputStream(myFile), StandardCharsets.UTF_8), pool);
+			}
+			
+			if (verbose) {
+				System.err.println("Loaded "+list.size()+" movies; "+pool.size()+" distinct strings and "
+						+pool.actorCount()+" actors were shared, saving about "+pool.bytesSaved() / 1024+" KB.");
+			}
+			
+			if (snapshotFile != null) { //so that the next start is faster
+				try {
+					MovieSnapshot.write(list, snapshotFile, sourceLength, sourceModified);
+				} catch (IOException e) {
+					System.err.println("Warning: the snapshot "+snapshotFile.getAbsolutePath()+
+							" could not be written: "+e.getMessage());
+				}
+			}
+		}
+		
+		if (indexKind != null) { //build the search index that was asked for
+			list.setSearchIndex(SearchIndex.create(indexKind, list));
+			if (verbose) {
+				System.err.println("Built the "+indexKind+" index, about "
+						+list.getSearchIndex().memoryFootprint() / 1024+" KB.");
+			}
+		}
+		
+		list.makeReadOnly(); //a stray change fails at once, instead of changing the list under the searches
+		
+		MovieCatalog catalog = list; //what the searches run on
+		MovieList published = list; //the list is only kept in the snapshot when the searches run on it
+		if (store.equals("columns")) {
+			MovieColumns columns = new MovieColumns(list);
+			if (verbose) {
+				System.err.println("Built the columnar store, about "+columns.memoryFootprint() / 1024+" KB.");
+			}
+			catalog = columns;
+			published = null; //so the movies can be garbage collected
+		}
+		else if (store.equals("offheap")) {
+			OffHeapMovieList offHeap = new OffHeapMovieList(list);
+			if (verbose) {
+				System.err.println("Built the off-heap store, "+offHeap.offHeapBytes() / 1024+" KB outside of the heap.");
+			}
+			catalog = offHeap;
+			published = null; //so the movies can be garbage collected, and only the off-heap records stay
+		}
+		else if (!store.equals("heap")) {
+			throw new IllegalArgumentException("unknown store "+store+"; expected heap, columns or offheap");
+		}
+		if (cacheWeight > 0) { //a new cache for every snapshot, so a reload never returns old results
+			catalog = new QueryCache(catalog, cacheWeight);
+		}
+		Autocomplete suggestions = new Autocomplete(list); //made now, so the snapshot does not need the list for it
+		return new ConcurrentMovieCatalog.Snapshot(published, catalog, suggestions);
+	}
+	
+	/**
+	 * Prints the statistics of the query cache of the current snapshot to System.err, if it has a cache.
+	 * @param catalog the catalog
+	 */
+	private static void printCacheStatistics(ConcurrentMovieCatalog catalog) {
+		QueryCache cache = catalog.current().getCache();
+		if (cache != null) {
+			System.err.println("Query cache: "+cache+".");
+		}
+	}
+	
+	/**
+	 * Reads the data set, one movie location per record, and builds the list of movies from it.
+	 * The first record holds the column titles and is skipped. The reader is closed when done.
+	 * @param myReader the reader to read the data set from
+	 * @return the list of all the movies in the data set
+	 * @throws IOException if the data set cannot be read
+	 */
+	public static MovieList loadMovies(Reader myReader) throws IOException {
+		return loadMovies(myReader, new IngestPool());
+	}
+	
+	/**
+	 * Reads the data set, one movie location per record, and builds the list of movies from it,
+	 * sharing the strings and actors through the specified pool.
+	 * The first record holds the column titles and is skipped. The reader is closed when done.
+	 * @param myReader the reader to read the data set from
+	 * @param pool the pool of strings and actors, which keeps the statistics of the load
+	 * @return the list of all the movies in the data set
+	 * @throws IOException if the data set cannot be read
+	 */
+	public static MovieList loadMovies(Reader myReader, IngestPool pool) throws IOException {
+		//All data must be trimmed to prevent issues with blank spaces in the substring match!
+		
+		Movie[] movies = new Movie[1024]; //every movie read, in file order
+		int count = 0;
+		
+		try (CSVReader csv = new CSVReader(myReader)) {
+			CSVRecord data = new CSVRecord(); //reused for every record, get returns the trimmed entries
+			csv.next(data); //skip the titles record
+			
+			while (csv.next(data)) { //while there are more records in the file
+				Movie current = toMovie(data, pool);
+				if (current != null) {
+					if (count == movies.length) {
+						movies = Arrays.copyOf(movies, count * 2);
+					}
+					movies[count++] = current;
+				}
+			}
+		}
+		return MovieList.bulkLoad(movies, count); //one sort, merging the locations of the same movie
+	}
+	
+	/**
+	 * Makes the movie described by one record of the data set, with its one location.
+	 * The strings and actors come from the pool, so the copies repeated on every row are shared.
+	 * @param data the record, with the columns of the data set
+	 * @param pool the pool of strings and actors read so far
+	 * @return the movie, or null if the title, year, location or first actor is blank
+	 */
+	static Movie toMovie(CSVRecord data, IngestPool pool) {
+		//check data to make sure that title, year, location and actor1 are not blank
+		if (data.size() < 9 || data.length(0)==0 || data.length(1)==0  || data.length(2)==0 || data.length(8)==0) { 
+			return null;
+		}
+		
+		String title = data.get(0, pool); 
+		
+		int relYear = data.getInt(1); //parse the year straight from the record
+		
+		Location location = new Location(data.get(2, pool), data.get(3, pool)); 
+		
+		String director = data.get(6, pool);
+		
+		String writer = data.get(7, pool);
+		
+		Actor a1 = pool.actor(data.get(8, pool));
+		
+		Actor a2 = null;
+		if (9 < data.size() && data.length(9) > 0)
+			a2 = pool.actor(data.get(9, pool));
+		
+		Actor a3 = null;
+		if (10 < data.size() && data.length(10) > 0)
+			a3 = pool.actor(data.get(10, pool));
+		
+		Movie current = new Movie(title, relYear, director, writer, a1, a2, a3); //construct a movie with the above data
+		current.addLocation(location); //adds location to movie
+		return current;
 	}
+	
 	/**
 	 * Method written by Professor Klukowska to parse the data
 	 * @param textLine the line of the csv file which is being parsed
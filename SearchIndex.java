@@ -0,0 +1,328 @@
+import java.util.Arrays;
+
+/**
+ * This abstract class is the parent of the indexes that a MovieList can use to answer
+ * title and actor searches without scanning every movie in the list.
+ * An index is built once over a list, and gives each movie a document id, its position in the list.
+ * The subclasses find the ids of the movies which match a keyword, and this class turns them
+ * into the same MovieList results that scanning the list would give.
+ * An index is only valid for as long as the list it was built over is not changed.
+ * @author atara
+ */
+public abstract class SearchIndex {
+	
+	//instance variables of SearchIndex
+	private final MovieList list; //the list this index was built over
+	private final int modCount; //the modCount of the list when this index was built
+	protected final Movie[] movies; //the movies of the list, indexed by document id, in sorted order
+	protected final String[] titles; //the folded title of each movie, indexed by document id
+	protected final String[][] actors; //the folded names of the actors of each movie, indexed by document id
+	
+	/**
+	 * Constructs the document tables shared by all indexes over the specified list.
+	 * @param list the list to index
+	 */
+	protected SearchIndex(MovieList list) {
+		this.list = list;
+		this.modCount = list.modCount;
+		movies = new Movie[list.size()];
+		titles = new String[movies.length];
+		actors = new String[movies.length][];
+		int id = 0;
+		for (Movie m : list) {
+			movies[id] = m;
+			titles[id] = m.getTitleKey();
+			Actor actor2 = m.getActor2();
+			Actor actor3 = m.getActor3();
+			int count = 1 + (actor2 != null ? 1 : 0) + (actor3 != null ? 1 : 0);
+			String[] names = new String[count];
+			names[0] = m.getActor1().getNameKey();
+			if (actor2 != null) {
+				names[1] = actor2.getNameKey();
+			}
+			if (actor3 != null) {
+				names[count - 1] = actor3.getNameKey();
+			}
+			actors[id] = names;
+			id++;
+		}
+	}
+	
+	/**
+	 * Builds an index of the specified kind over the specified list.
+	 * @param kind the kind of index: "token", "trigram" or "suffix"
+	 * @param list the list to index
+	 * @return the new index
+	 * @throws IllegalArgumentException if kind is not a known kind of index
+	 */
+	public static SearchIndex create(String kind, MovieList list) {
+		if (kind.equalsIgnoreCase("token")) {
+			return new TokenIndex(list);
+		}
+		if (kind.equalsIgnoreCase("trigram")) {
+			return new TrigramIndex(list);
+		}
+		if (kind.equalsIgnoreCase("suffix")) {
+			return new SuffixArrayIndex(list);
+		}
+		throw new IllegalArgumentException("Unknown index: " + kind);
+	}
+	
+	/**
+	 * Returns the list this index was built over.
+	 * @return the list this index was built over
+	 */
+	public MovieList getList() {
+		return list;
+	}
+	
+	/**
+	 * Checks if the list has not been changed since this index was built.
+	 * @return true if this index still matches its list
+	 */
+	public boolean isCurrent() {
+		return list.modCount == modCount;
+	}
+	
+	/**
+	 * Returns a list of the Movie objects whose titles contain the specified keyword as a substring,
+	 * ignoring case.
+	 * @param title the specified keyword to search for
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	public MovieList getMatchingTitles(String title) {
+		if (title == null || title.trim().length() == 0) {
+			return null;
+		}
+		return toMovieList(titleMatches(MovieList.fold(title)));
+	}
+	
+	/**
+	 * Returns a list of the Movie objects with an actor whose name contains the specified keyword
+	 * as a substring, ignoring case.
+	 * @param actor the specified keyword to search for
+	 * @return a MovieList of the matching movies, or null if there are none
+	 */
+	public MovieList getMatchingActor(String actor) {
+		if (actor == null || actor.trim().length() == 0) {
+			return null;
+		}
+		return toMovieList(actorMatches(MovieList.fold(actor)));
+	}
+	
+	/**
+	 * Finds the movies whose folded title contains the specified keyword.
+	 * @param keyword the folded, non-empty keyword
+	 * @return the document ids of the matching movies, in increasing order
+	 */
+	protected abstract int[] titleMatches(String keyword);
+	
+	/**
+	 * Finds the movies with an actor whose folded name contains the specified keyword.
+	 * @param keyword the folded, non-empty keyword
+	 * @return the document ids of the matching movies, in increasing order
+	 */
+	protected abstract int[] actorMatches(String keyword);
+	
+	/**
+	 * Estimates the number of bytes the structures of this index take up on the heap,
+	 * not counting the movies themselves or the folded strings they already cache,
+	 * so that the kinds of index can be compared when choosing one.
+	 * @return the estimated size in bytes
+	 */
+	public abstract long memoryFootprint();
+	
+	/**
+	 * Estimates the heap size of an int array on a 64 bit JVM with compressed references.
+	 * @param array the array
+	 * @return the estimated size in bytes
+	 */
+	protected static long sizeOf(int[] array) {
+		return align(16 + 4L * array.length);
+	}
+	
+	/**
+	 * Estimates the heap size of a char array on a 64 bit JVM with compressed references.
+	 * @param array the array
+	 * @return the estimated size in bytes
+	 */
+	protected static long sizeOf(char[] array) {
+		return align(16 + 2L * array.length);
+	}
+	
+	/**
+	 * Estimates the heap size of a String, assuming that it is stored with one byte per character.
+	 * @param s the String
+	 * @return the estimated size in bytes
+	 */
+	protected static long sizeOf(String s) {
+		return 24 + align(16 + s.length());
+	}
+	
+	/**
+	 * Estimates the heap size of an array of references on a 64 bit JVM with compressed references.
+	 * @param length the length of the array
+	 * @return the estimated size in bytes, not counting the objects it refers to
+	 */
+	protected static long sizeOfReferences(int length) {
+		return align(16 + 4L * length);
+	}
+	
+	/**
+	 * Rounds a size up to the 8 bytes that every object on the heap is aligned to.
+	 * @param size the size in bytes
+	 * @return the aligned size in bytes
+	 */
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+	
+	/**
+	 * Checks if the title of the specified movie contains the keyword.
+	 * @param id the document id of the movie
+	 * @param keyword the folded keyword
+	 * @return true if the title contains the keyword
+	 */
+	protected boolean titleContains(int id, String keyword) {
+		return titles[id].contains(keyword);
+	}
+	
+	/**
+	 * Checks if the name of any actor of the specified movie contains the keyword.
+	 * @param id the document id of the movie
+	 * @param keyword the folded keyword
+	 * @return true if an actor's name contains the keyword
+	 */
+	protected boolean actorContains(int id, String keyword) {
+		for (String name : actors[id]) {
+			if (name.contains(keyword)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Keeps only the candidate movies whose title really contains the keyword.
+	 * @param candidates the document ids to check, in increasing order, or null to check every movie
+	 * @param keyword the folded keyword
+	 * @return the document ids of the matching movies, in increasing order
+	 */
+	protected int[] verifyTitles(int[] candidates, String keyword) {
+		IntList matches = new IntList();
+		int count = candidates == null ? movies.length : candidates.length;
+		for (int i = 0; i < count; i++) {
+			int id = candidates == null ? i : candidates[i];
+			if (titleContains(id, keyword)) {
+				matches.add(id);
+			}
+		}
+		return matches.toArray();
+	}
+	
+	/**
+	 * Keeps only the candidate movies with an actor whose name really contains the keyword.
+	 * @param candidates the document ids to check, in increasing order, or null to check every movie
+	 * @param keyword the folded keyword
+	 * @return the document ids of the matching movies, in increasing order
+	 */
+	protected int[] verifyActors(int[] candidates, String keyword) {
+		IntList matches = new IntList();
+		int count = candidates == null ? movies.length : candidates.length;
+		for (int i = 0; i < count; i++) {
+			int id = candidates == null ? i : candidates[i];
+			if (actorContains(id, keyword)) {
+				matches.add(id);
+			}
+		}
+		return matches.toArray();
+	}
+	
+	/**
+	 * Builds the result list for the specified document ids.
+	 * @param ids the document ids of the matching movies
+	 * @return a MovieList of the movies, or null if there are none
+	 */
+	protected MovieList toMovieList(int[] ids) {
+		if (ids.length == 0) {
+			return null;
+		}
+		Movie[] found = new Movie[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			found[i] = movies[ids[i]]; //ids follow the order of the list, so these are already sorted
+		}
+		MovieList result = new MovieList();
+		result.buildBalanced(found, found.length);
+		return result;
+	}
+	
+	/**
+	 * Returns the ids that are in both of the specified sorted arrays.
+	 * @param a the first array of ids, in increasing order
+	 * @param b the second array of ids, in increasing order
+	 * @return the ids in both arrays, in increasing order
+	 */
+	protected static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			}
+			else if (a[i] > b[j]) {
+				j++;
+			}
+			else {
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+	
+	/**
+	 * This is a growable array of ints, used to collect document ids without boxing them.
+	 */
+	protected static class IntList {
+		private int[] data = new int[8]; //the ids
+		private int size; //the number of ids in data
+		
+		/**
+		 * Adds an id to the end of the list.
+		 * @param value the id to add
+		 */
+		public void add(int value) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = value;
+		}
+		
+		/**
+		 * Returns the last id in the list.
+		 * @return the last id, or -1 if the list is empty
+		 */
+		public int last() {
+			return size == 0 ? -1 : data[size - 1];
+		}
+		
+		/**
+		 * Returns the number of ids in the list.
+		 * @return the number of ids in the list
+		 */
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * Returns the ids in an array of exactly the right length.
+		 * @return the ids in the list
+		 */
+		public int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+}
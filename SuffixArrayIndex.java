@@ -0,0 +1,299 @@
+import java.util.Arrays;
+
+/**
+ * This class is a generalized suffix array over the titles and actor names of a MovieList.
+ * All the folded titles are joined into one text, each followed by a separator character,
+ * and the suffix array lists the starting positions of all suffixes of that text in sorted order.
+ * The actor names get a text and suffix array of their own.
+ *
+ * All the suffixes which start with a keyword are next to each other in the suffix array, so a search
+ * is one binary search for the first of them, followed by a walk along the LCP array (the length of
+ * the common prefix of each suffix and the one before it) for as long as the keyword is still shared.
+ * Every suffix found is a real occurrence of the keyword, so no verification is needed.
+ * @author atara
+ */
+public class SuffixArrayIndex extends SearchIndex {
+	
+	private static final char SEPARATOR = '\u0000'; //ends every string in the text, so no match can cross it
+	
+	//instance variables of SuffixArrayIndex
+	private final SuffixArray titleArray; //the suffix array over all titles
+	private final SuffixArray actorArray; //the suffix array over all actor names
+	
+	/**
+	 * Builds the suffix arrays over the specified list.
+	 * @param list the list to index
+	 */
+	public SuffixArrayIndex(MovieList list) {
+		super(list);
+		int titleCount = movies.length;
+		int[] titleDocs = new int[titleCount];
+		String[] titleStrings = new String[titleCount];
+		int actorCount = 0;
+		for (int id = 0; id < movies.length; id++) {
+			titleDocs[id] = id;
+			titleStrings[id] = titles[id];
+			actorCount += actors[id].length;
+		}
+		int[] actorDocs = new int[actorCount];
+		String[] actorStrings = new String[actorCount];
+		int next = 0;
+		for (int id = 0; id < movies.length; id++) {
+			for (String name : actors[id]) {
+				actorDocs[next] = id;
+				actorStrings[next] = name;
+				next++;
+			}
+		}
+		titleArray = new SuffixArray(titleStrings, titleDocs);
+		actorArray = new SuffixArray(actorStrings, actorDocs);
+	}
+	
+	@Override
+	protected int[] titleMatches(String keyword) {
+		if (keyword.indexOf(SEPARATOR) >= 0) {
+			return verifyTitles(null, keyword); //the text can't be searched for its own separator
+		}
+		return titleArray.find(keyword);
+	}
+	
+	@Override
+	protected int[] actorMatches(String keyword) {
+		if (keyword.indexOf(SEPARATOR) >= 0) {
+			return verifyActors(null, keyword);
+		}
+		return actorArray.find(keyword);
+	}
+	
+	@Override
+	public long memoryFootprint() {
+		return titleArray.memoryFootprint() + actorArray.memoryFootprint();
+	}
+	
+	/**
+	 * This class is the suffix array and LCP array over one text made of many strings,
+	 * along with the mapping from positions in the text back to document ids.
+	 */
+	private static class SuffixArray {
+		private final char[] text; //all the strings, each followed by SEPARATOR
+		private final int[] starts; //the position in text where each string starts
+		private final int[] docs; //the document id of each string
+		private final int[] suffixes; //the starting positions of all suffixes of text, in sorted order
+		private final int[] lcp; //lcp[i] is the length of the common prefix of suffixes[i - 1] and suffixes[i]
+		
+		/**
+		 * Builds the suffix array and LCP array over the specified strings.
+		 * @param strings the folded strings to index
+		 * @param docs the document id of each string
+		 */
+		public SuffixArray(String[] strings, int[] docs) {
+			int length = 0;
+			for (String s : strings) {
+				length += s.length() + 1;
+			}
+			text = new char[length];
+			starts = new int[strings.length];
+			int position = 0;
+			for (int i = 0; i < strings.length; i++) {
+				starts[i] = position;
+				strings[i].getChars(0, strings[i].length(), text, position);
+				position += strings[i].length();
+				text[position++] = SEPARATOR;
+			}
+			this.docs = docs;
+			suffixes = sort(text);
+			lcp = longestCommonPrefixes(text, suffixes);
+		}
+		
+		/**
+		 * Sorts the suffixes of the text by prefix doubling: after each round, the suffixes are
+		 * sorted by their first k characters, and the next round sorts them by 2k characters using
+		 * the ranks of the two halves as keys, with two stable counting sorts.
+		 * @param text the text
+		 * @return the starting positions of the suffixes, in sorted order
+		 */
+		private static int[] sort(char[] text) {
+			int n = text.length;
+			int[] sa = new int[n];
+			int[] rank = new int[n];
+			int[] tmp = new int[n];
+			int[] count = new int[Math.max(Character.MAX_VALUE + 1, n)];
+			if (n == 0) {
+				return sa;
+			}
+			
+			//sort by the first character
+			for (int i = 0; i < n; i++) {
+				count[text[i]]++;
+			}
+			for (int c = 1; c < count.length; c++) {
+				count[c] += count[c - 1];
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				sa[--count[text[i]]] = i;
+			}
+			int classes = 1;
+			rank[sa[0]] = 0;
+			for (int i = 1; i < n; i++) {
+				if (text[sa[i]] != text[sa[i - 1]]) {
+					classes++;
+				}
+				rank[sa[i]] = classes - 1;
+			}
+			
+			for (int k = 1; k < n && classes < n; k <<= 1) {
+				//order by the second half: suffixes without one come first, then the rest in current order
+				int p = 0;
+				for (int i = n - k; i < n; i++) {
+					tmp[p++] = i;
+				}
+				for (int i = 0; i < n; i++) {
+					if (sa[i] >= k) {
+						tmp[p++] = sa[i] - k;
+					}
+				}
+				//stable counting sort by the first half
+				Arrays.fill(count, 0, classes, 0);
+				for (int i = 0; i < n; i++) {
+					count[rank[i]]++;
+				}
+				for (int c = 1; c < classes; c++) {
+					count[c] += count[c - 1];
+				}
+				for (int i = n - 1; i >= 0; i--) {
+					sa[--count[rank[tmp[i]]]] = tmp[i];
+				}
+				//new ranks, from both halves
+				tmp[sa[0]] = 0;
+				classes = 1;
+				for (int i = 1; i < n; i++) {
+					int a = sa[i - 1];
+					int b = sa[i];
+					int secondA = a + k < n ? rank[a + k] : -1;
+					int secondB = b + k < n ? rank[b + k] : -1;
+					if (rank[a] != rank[b] || secondA != secondB) {
+						classes++;
+					}
+					tmp[b] = classes - 1;
+				}
+				int[] swap = rank;
+				rank = tmp;
+				tmp = swap;
+			}
+			return sa;
+		}
+		
+		/**
+		 * Computes the LCP array in linear time (Kasai's algorithm), visiting the suffixes in text order
+		 * so that each common prefix is at most one shorter than the one before it.
+		 * @param text the text
+		 * @param sa the sorted suffixes of the text
+		 * @return the LCP array
+		 */
+		private static int[] longestCommonPrefixes(char[] text, int[] sa) {
+			int n = text.length;
+			int[] rank = new int[n];
+			for (int i = 0; i < n; i++) {
+				rank[sa[i]] = i;
+			}
+			int[] lcp = new int[n];
+			int h = 0;
+			for (int i = 0; i < n; i++) {
+				if (rank[i] > 0) {
+					int j = sa[rank[i] - 1];
+					while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+						h++;
+					}
+					lcp[rank[i]] = h;
+					if (h > 0) {
+						h--;
+					}
+				}
+				else {
+					h = 0;
+				}
+			}
+			return lcp;
+		}
+		
+		/**
+		 * Compares the suffix at the specified position with the keyword, looking at no more
+		 * characters than the keyword has.
+		 * @param position the start of the suffix
+		 * @param keyword the keyword
+		 * @return a negative number, zero, or a positive number as the suffix is less than,
+		 * starts with, or is greater than the keyword
+		 */
+		private int compare(int position, String keyword) {
+			int length = keyword.length();
+			for (int i = 0; i < length; i++) {
+				if (position + i >= text.length) {
+					return -1; //the suffix ran out first
+				}
+				int difference = text[position + i] - keyword.charAt(i);
+				if (difference != 0) {
+					return difference;
+				}
+			}
+			return 0;
+		}
+		
+		/**
+		 * Finds the documents which contain the keyword.
+		 * @param keyword the folded, non-empty keyword
+		 * @return the document ids, in increasing order and without repeats
+		 */
+		public int[] find(String keyword) {
+			//binary search for the first suffix which is not less than the keyword
+			int low = 0;
+			int high = suffixes.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (compare(suffixes[middle], keyword) < 0) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			if (low == suffixes.length || compare(suffixes[low], keyword) != 0) {
+				return new int[0];
+			}
+			//every following suffix that shares the whole keyword with the one before it also starts with it
+			IntList ids = new IntList();
+			int i = low;
+			do {
+				ids.add(docs[stringAt(suffixes[i])]);
+				i++;
+			} while (i < suffixes.length && lcp[i] >= keyword.length());
+			
+			int[] result = ids.toArray();
+			Arrays.sort(result);
+			int count = 0;
+			for (int j = 0; j < result.length; j++) {
+				if (count == 0 || result[count - 1] != result[j]) {
+					result[count++] = result[j];
+				}
+			}
+			return Arrays.copyOf(result, count);
+		}
+		
+		/**
+		 * Finds which string the specified position of the text belongs to.
+		 * @param position a position in the text
+		 * @return the index of the string containing that position
+		 */
+		private int stringAt(int position) {
+			int index = Arrays.binarySearch(starts, position);
+			return index >= 0 ? index : -index - 2;
+		}
+		
+		/**
+		 * Estimates the number of bytes this suffix array takes up on the heap.
+		 * @return the estimated size in bytes
+		 */
+		public long memoryFootprint() {
+			return sizeOf(text) + sizeOf(starts) + sizeOf(docs) + sizeOf(suffixes) + sizeOf(lcp);
+		}
+	}
+}
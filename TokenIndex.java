@@ -0,0 +1,189 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is an inverted index over the words (tokens) of the titles and actor names in a MovieList.
+ * A token is a run of characters without whitespace, and every token has a posting list
+ * of the document ids of the movies it appears in.
+ *
+ * A keyword still matches as a substring, not as a whole word: the keyword is split at its whitespace,
+ * and every piece has to be inside one token of the matching text. So the candidates for a keyword are
+ * the movies which have, for each piece, some token containing that piece. Only the distinct tokens are
+ * scanned for this, which are far fewer than the movies, and the candidates are then checked against
+ * the full text so the results are exactly those of scanning the list.
+ * @author atara
+ */
+public class TokenIndex extends SearchIndex {
+	
+	//instance variables of TokenIndex
+	private final String[] titleTokens; //the distinct tokens of all titles
+	private final int[][] titlePostings; //the document ids of the movies for each title token
+	private final String[] actorTokens; //the distinct tokens of all actor names
+	private final int[][] actorPostings; //the document ids of the movies for each actor token
+	
+	/**
+	 * Builds the token index over the specified list.
+	 * @param list the list to index
+	 */
+	public TokenIndex(MovieList list) {
+		super(list);
+		HashMap<String, IntList> titleMap = new HashMap<>();
+		HashMap<String, IntList> actorMap = new HashMap<>();
+		for (int id = 0; id < movies.length; id++) {
+			addTokens(titleMap, titles[id], id);
+			for (String name : actors[id]) {
+				addTokens(actorMap, name, id);
+			}
+		}
+		titleTokens = new String[titleMap.size()];
+		titlePostings = new int[titleMap.size()][];
+		freeze(titleMap, titleTokens, titlePostings);
+		actorTokens = new String[actorMap.size()];
+		actorPostings = new int[actorMap.size()][];
+		freeze(actorMap, actorTokens, actorPostings);
+	}
+	
+	/**
+	 * Adds the specified document id to the posting list of every token in the text.
+	 * @param map the posting lists, by token
+	 * @param text the folded text to split into tokens
+	 * @param id the document id of the movie the text belongs to
+	 */
+	private static void addTokens(HashMap<String, IntList> map, String text, int id) {
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			while (i < length && Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				IntList postings = map.computeIfAbsent(text.substring(start, i), k -> new IntList());
+				if (postings.last() != id) { //ids come in increasing order, so this skips repeats
+					postings.add(id);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Copies the posting lists into compact arrays.
+	 * @param map the posting lists, by token
+	 * @param tokens the array to fill with the tokens
+	 * @param postings the array to fill with the posting list of each token
+	 */
+	private static void freeze(HashMap<String, IntList> map, String[] tokens, int[][] postings) {
+		int i = 0;
+		for (Map.Entry<String, IntList> entry : map.entrySet()) {
+			tokens[i] = entry.getKey();
+			postings[i] = entry.getValue().toArray();
+			i++;
+		}
+	}
+	
+	@Override
+	protected int[] titleMatches(String keyword) {
+		return verifyTitles(candidates(titleTokens, titlePostings, keyword), keyword);
+	}
+	
+	@Override
+	protected int[] actorMatches(String keyword) {
+		return verifyActors(candidates(actorTokens, actorPostings, keyword), keyword);
+	}
+	
+	@Override
+	public long memoryFootprint() {
+		return footprint(titleTokens, titlePostings) + footprint(actorTokens, actorPostings);
+	}
+	
+	/**
+	 * Estimates the heap size of one set of tokens and their posting lists.
+	 * @param tokens the distinct tokens
+	 * @param postings the posting list of each token
+	 * @return the estimated size in bytes
+	 */
+	private static long footprint(String[] tokens, int[][] postings) {
+		long size = 2 * sizeOfReferences(tokens.length);
+		for (int i = 0; i < tokens.length; i++) {
+			size += sizeOf(tokens[i]) + sizeOf(postings[i]);
+		}
+		return size;
+	}
+	
+	/**
+	 * Finds the movies which have a token containing each whitespace separated piece of the keyword.
+	 * @param tokens the distinct tokens
+	 * @param postings the posting list of each token
+	 * @param keyword the folded, non-empty keyword
+	 * @return the document ids of the candidate movies, in increasing order, or null for every movie
+	 */
+	private static int[] candidates(String[] tokens, int[][] postings, String keyword) {
+		int[] result = null;
+		int length = keyword.length();
+		int i = 0;
+		while (i < length) {
+			//split at whitespace exactly the way the tokens were split
+			while (i < length && Character.isWhitespace(keyword.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(keyword.charAt(i))) {
+				i++;
+			}
+			if (i > start) {
+				int[] ids = containing(tokens, postings, keyword.substring(start, i));
+				result = result == null ? ids : intersect(result, ids);
+				if (result.length == 0) {
+					break; //nothing left to intersect
+				}
+			}
+		}
+		return result; //null when the keyword is all whitespace, so that every movie is checked
+	}
+	
+	/**
+	 * Returns the union of the posting lists of all the tokens which contain the specified piece.
+	 * @param tokens the distinct tokens
+	 * @param postings the posting list of each token
+	 * @param piece the folded piece of a keyword, without whitespace
+	 * @return the document ids, in increasing order and without repeats
+	 */
+	private static int[] containing(String[] tokens, int[][] postings, String piece) {
+		int[] single = null;
+		IntList union = null;
+		for (int i = 0; i < tokens.length; i++) {
+			if (tokens[i].contains(piece)) {
+				if (single == null && union == null) {
+					single = postings[i]; //most pieces match one token, which needs no merging
+				}
+				else {
+					if (union == null) {
+						union = new IntList();
+						for (int id : single) {
+							union.add(id);
+						}
+					}
+					for (int id : postings[i]) {
+						union.add(id);
+					}
+				}
+			}
+		}
+		if (union == null) {
+			return single == null ? new int[0] : single;
+		}
+		int[] ids = union.toArray();
+		Arrays.sort(ids);
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (count == 0 || ids[count - 1] != ids[i]) {
+				ids[count++] = ids[i];
+			}
+		}
+		return Arrays.copyOf(ids, count);
+	}
+}
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * This class is an index over every run of three characters (trigram) in the titles and actor names
+ * of a MovieList. Every trigram has a posting list of the document ids of the movies it appears in.
+ *
+ * Any text which contains a keyword also contains every trigram of the keyword, so the candidates
+ * for a keyword are the intersection of the posting lists of its trigrams. The candidates are then
+ * checked against the full text, so the results are exactly those of scanning the list.
+ * Keywords shorter than three characters have no trigrams, and are answered by scanning.
+ * @author atara
+ */
+public class TrigramIndex extends SearchIndex {
+	
+	//instance variables of TrigramIndex
+	private final HashMap<Long, int[]> titlePostings; //the document ids of the movies for each title trigram
+	private final HashMap<Long, int[]> actorPostings; //the document ids of the movies for each actor name trigram
+	
+	/**
+	 * Builds the trigram index over the specified list.
+	 * @param list the list to index
+	 */
+	public TrigramIndex(MovieList list) {
+		super(list);
+		HashMap<Long, IntList> titleMap = new HashMap<>();
+		HashMap<Long, IntList> actorMap = new HashMap<>();
+		for (int id = 0; id < movies.length; id++) {
+			addTrigrams(titleMap, titles[id], id);
+			for (String name : actors[id]) { //each name separately, so no trigram spans two names
+				addTrigrams(actorMap, name, id);
+			}
+		}
+		titlePostings = freeze(titleMap);
+		actorPostings = freeze(actorMap);
+	}
+	
+	/**
+	 * Packs the three characters of text starting at the specified position into one key.
+	 * @param text the text
+	 * @param i the position of the first character
+	 * @return the trigram as a key
+	 */
+	private static long trigram(String text, int i) {
+		return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+	}
+	
+	/**
+	 * Adds the specified document id to the posting list of every trigram in the text.
+	 * @param map the posting lists, by trigram
+	 * @param text the folded text
+	 * @param id the document id of the movie the text belongs to
+	 */
+	private static void addTrigrams(HashMap<Long, IntList> map, String text, int id) {
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			IntList postings = map.computeIfAbsent(trigram(text, i), k -> new IntList());
+			if (postings.last() != id) { //ids come in increasing order, so this skips repeats
+				postings.add(id);
+			}
+		}
+	}
+	
+	/**
+	 * Copies the posting lists into compact arrays.
+	 * @param map the posting lists, by trigram
+	 * @return the posting lists as arrays, by trigram
+	 */
+	private static HashMap<Long, int[]> freeze(HashMap<Long, IntList> map) {
+		HashMap<Long, int[]> result = new HashMap<>(map.size() * 4 / 3 + 1);
+		map.forEach((key, postings) -> result.put(key, postings.toArray()));
+		return result;
+	}
+	
+	@Override
+	protected int[] titleMatches(String keyword) {
+		return verifyTitles(candidates(titlePostings, keyword), keyword);
+	}
+	
+	@Override
+	protected int[] actorMatches(String keyword) {
+		return verifyActors(candidates(actorPostings, keyword), keyword);
+	}
+	
+	@Override
+	public long memoryFootprint() {
+		return footprint(titlePostings) + footprint(actorPostings);
+	}
+	
+	/**
+	 * Estimates the heap size of one map of posting lists: its table, and for every trigram
+	 * a map entry, a boxed key and the posting list itself.
+	 * @param postings the posting lists, by trigram
+	 * @return the estimated size in bytes
+	 */
+	private static long footprint(HashMap<Long, int[]> postings) {
+		long size = 48 + sizeOfReferences(Integer.highestOneBit(Math.max(1, postings.size() * 4 / 3)) * 2);
+		for (int[] ids : postings.values()) {
+			size += 32 + 16 + sizeOf(ids);
+		}
+		return size;
+	}
+	
+	/**
+	 * Intersects the posting lists of all the trigrams of the keyword, shortest first,
+	 * so that the intermediate results stay as small as possible.
+	 * @param postings the posting lists, by trigram
+	 * @param keyword the folded, non-empty keyword
+	 * @return the document ids of the candidate movies, in increasing order,
+	 * or null if the keyword is too short to have trigrams, so that every movie is checked
+	 */
+	private static int[] candidates(HashMap<Long, int[]> postings, String keyword) {
+		int count = keyword.length() - 2;
+		if (count <= 0) {
+			return null;
+		}
+		int[][] lists = new int[count][];
+		for (int i = 0; i < count; i++) {
+			lists[i] = postings.get(trigram(keyword, i));
+			if (lists[i] == null) {
+				return new int[0]; //a trigram no text has, so nothing can match
+			}
+		}
+		Arrays.sort(lists, Comparator.comparingInt(ids -> ids.length));
+		int[] result = lists[0];
+		for (int i = 1; i < count && result.length > 0; i++) {
+			if (lists[i] != lists[i - 1]) { //a trigram repeated in the keyword changes nothing
+				result = intersect(result, lists[i]);
+			}
+		}
+		return result;
+	}
+}